@@ -0,0 +1,36 @@
+package test.benchmarks;
+
+import com.microsoft.playwright.Page;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import test.utility.BrowserPool;
+import test.utility.LocalAppServer;
+
+/**
+ * Page on the local SauceDemo stand-in, shared by the benchmarks of one thread.
+ */
+@State(Scope.Thread)
+public class BrowserState {
+
+    public Page page;
+    public String loginUrl;
+    public String inventoryUrl;
+
+    @Setup(Level.Trial)
+    public void openPage() {
+        loginUrl = LocalAppServer.baseUrl("saucedemo");
+        inventoryUrl = loginUrl + "inventory.html";
+        page = BrowserPool.acquirePage();
+        page.navigate(loginUrl);
+    }
+
+    @TearDown(Level.Trial)
+    public void closePage() {
+        BrowserPool.release(page);
+        BrowserPool.shutdown();
+        LocalAppServer.stop();
+    }
+}
@@ -0,0 +1,44 @@
+package test.benchmarks;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import test.utility.BrowserPool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of getting a usable page: the old per-class Playwright launch versus a recycled
+ * context from BrowserPool (what Commons does before every test method).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dbrowser.headless=true", "-Dtest.env=local"})
+public class LifecycleBenchmark {
+
+    @Benchmark
+    public void coldLaunch() {
+        try (Playwright playwright = Playwright.create()) {
+            Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(true));
+            browser.newPage().navigate("about:blank");
+            browser.close();
+        }
+    }
+
+    @Benchmark
+    public void recycledContext(BrowserState state) {
+        Page page = BrowserPool.acquirePage();
+        page.navigate(state.loginUrl);
+        BrowserPool.release(page);
+    }
+}
@@ -0,0 +1,39 @@
+package test.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import test.pageobjects.saucedemo.LoginPageObjects;
+import test.pageobjects.todo.TodoItemPageObjects;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead the page-object layer (locator cache, timing) adds on top of raw Playwright calls.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dbrowser.headless=true", "-Dtest.env=local"})
+public class PageObjectBenchmark {
+
+    @Benchmark
+    public void rawFill(BrowserState state) {
+        state.page.fill("[name='user-name']", "standard_user");
+    }
+
+    @Benchmark
+    public void pageObjectFill(BrowserState state) {
+        new LoginPageObjects(state.page).enterUsername("standard_user");
+    }
+
+    @Benchmark
+    public String parameterizedSelector(BrowserState state) {
+        return new TodoItemPageObjects(state.page).getDeleteButtonForTodoSelector("This is a test Input 1");
+    }
+}
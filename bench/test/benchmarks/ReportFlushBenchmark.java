@@ -0,0 +1,59 @@
+package test.benchmarks;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one ExtentReports flush as the number of tests in the report grows.
+ * Flushing after every test costs the sum of these values over the suite.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReportFlushBenchmark {
+
+    @Param({"5", "50", "500", "5000"})
+    public int tests;
+
+    private ExtentReports extent;
+
+    @Setup(Level.Trial)
+    public void createReport() throws IOException {
+        Path directory = Files.createTempDirectory("extent-bench");
+        extent = new ExtentReports();
+        extent.attachReporter(new ExtentSparkReporter(directory.resolve("TestReport.html").toString()));
+        for (int i = 0; i < tests; i++) {
+            ExtentTest test = extent.createTest("Benchmark test " + i, "Generated for the flush benchmark");
+            test.info("Step 1: Navigating to login page");
+            test.info("Step 2: Entering username");
+            test.info("Step 3: Clicking login button");
+            test.pass("Login successful");
+        }
+    }
+
+    @Benchmark
+    public void flush() {
+        extent.flush();
+    }
+}
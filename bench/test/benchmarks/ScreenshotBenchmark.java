@@ -0,0 +1,40 @@
+package test.benchmarks;
+
+import com.microsoft.playwright.Page;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import test.utility.ScreenshotService;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time the test thread spends per screenshot: the old synchronous full-page PNG write
+ * versus ScreenshotService, which hands encoding and the disk write to its worker pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dbrowser.headless=true", "-Dtest.env=local"})
+public class ScreenshotBenchmark {
+
+    @Benchmark
+    public void synchronousFullPagePng(BrowserState state) {
+        state.page.evaluate("window.scrollTo(0, document.body.scrollHeight)");
+        state.page.screenshot(new Page.ScreenshotOptions()
+                .setPath(Paths.get(System.getProperty("user.dir"), "test-output", "screenshots", "bench_sync.png"))
+                .setFullPage(true));
+    }
+
+    @Benchmark
+    public String screenshotService(BrowserState state) throws IOException {
+        return ScreenshotService.capture(state.page, "bench_async");
+    }
+}
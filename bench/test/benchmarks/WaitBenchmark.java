@@ -0,0 +1,59 @@
+package test.benchmarks;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.WaitForSelectorState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import test.utility.ElementProbe;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip latency of the readiness waits on an already loaded login form.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Dbrowser.headless=true", "-Dtest.env=local"})
+public class WaitBenchmark {
+
+    private static final String LOGIN_BUTTON = "#login-button";
+    private static final List<String> LOGIN_FORM = Arrays.asList("[name='user-name']", "//input[@id='password']", LOGIN_BUTTON);
+
+    /** Previous waitForElementEnabled: waitForSelector plus waitForFunction, two round trips */
+    @Benchmark
+    public Object legacyElementEnabled(BrowserState state) {
+        state.page.waitForSelector(LOGIN_BUTTON, new Page.WaitForSelectorOptions().setState(WaitForSelectorState.ATTACHED));
+        return state.page.waitForFunction("selector => !document.querySelector(selector).disabled", LOGIN_BUTTON);
+    }
+
+    /** Current waitForElementEnabled: locator wait plus enabled assertion */
+    @Benchmark
+    public Map<String, Long> probeElementEnabled(BrowserState state) {
+        return ElementProbe.awaitReady(state.page, Collections.singletonList(LOGIN_BUTTON), false, 10000);
+    }
+
+    /** Previous login form check: one wait per element */
+    @Benchmark
+    public void sequentialFormReady(BrowserState state) {
+        for (String selector : LOGIN_FORM) {
+            state.page.waitForSelector(selector, new Page.WaitForSelectorOptions().setState(WaitForSelectorState.VISIBLE));
+        }
+    }
+
+    /** Current login form check: locator waits against one shared deadline */
+    @Benchmark
+    public Map<String, Long> batchedFormReady(BrowserState state) {
+        return ElementProbe.awaitReady(state.page, LOGIN_FORM, true, 10000);
+    }
+}
@@ -0,0 +1,196 @@
+package test.pageobjects;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import test.utility.PerfMetrics;
+import test.utility.RunHistory;
+import test.utility.Timings;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Base class for page objects.
+ * Selectors are declared once as private static final String constants of the page object;
+ * constants containing %s are templates for parameterized selectors. Constants named *URL or
+ * *_KEY (e.g. storage keys) are not selectors. Locator instances are
+ * cached per Page in an LRU bounded cache that is dropped when the page closes. On first use of
+ * a page object class all of its declared CSS and XPath selectors are syntax-checked in one
+ * round trip, so a broken selector fails fast with its name instead of timing out; selectors of
+ * Playwright's own engines (text=, role=, chained with >>, :has-text) are left to Playwright. Constructing a page object costs
+ * nothing until one of its locators is used, apart from noting it in the RunHistory of the test.
+ */
+public abstract class BasePageObjects {
+
+    private static final int MAX_LOCATORS_PER_PAGE = 256;
+
+    private static final Map<Page, Map<String, Locator>> LOCATORS = Collections.synchronizedMap(new HashMap<>());
+    private static final Set<Class<?>> VALIDATED = ConcurrentHashMap.newKeySet();
+
+    // only CSS and XPath can be checked by the page; Playwright's own engines and pseudo-classes are skipped
+    private static final String VALIDATE_SCRIPT = "selectors => {"
+            + "  const fragment = document.createDocumentFragment();"
+            + "  const playwrightOnly = /^(internal:|[a-zA-Z][\\w-]*=|['\"])|>>|:(has-text|text|text-is|text-matches|visible"
+            + "|nth-match|left-of|right-of|above|below|near)\\b/;"
+            + "  const broken = [];"
+            + "  for (const [name, declared] of Object.entries(selectors)) {"
+            + "    let selector = declared;"
+            + "    let xpath = selector.startsWith('/') || selector.startsWith('(/');"
+            + "    if (selector.startsWith('xpath=')) { selector = selector.substring(6); xpath = true; }"
+            + "    else if (selector.startsWith('css=')) selector = selector.substring(4);"
+            + "    else if (!xpath && playwrightOnly.test(selector)) continue;"
+            + "    try {"
+            + "      if (xpath) document.createExpression(selector);"
+            + "      else fragment.querySelector(selector);"
+            + "    } catch (e) { broken.push(name + ' = ' + declared + ' (' + e.message + ')'); }"
+            + "  }"
+            + "  return broken;"
+            + "}";
+
+    protected final Page page;
+
+    protected BasePageObjects(Page page) {
+        this.page = page;
+        RunHistory.touchPageObject(getClass());
+    }
+
+    /**
+     * Cached locator for a declared selector
+     * @param selector CSS or XPath selector constant
+     * @return Locator bound to this page
+     */
+    protected Locator locator(String selector) {
+        validateDeclaredSelectors();
+        Map<String, Locator> cache;
+        synchronized (LOCATORS) {
+            cache = LOCATORS.computeIfAbsent(page, p -> {
+                // the cached locators reference their page, so the entry goes when the page does
+                p.onClose(closed -> LOCATORS.remove(closed));
+                return lru(MAX_LOCATORS_PER_PAGE);
+            });
+        }
+        return cache.computeIfAbsent(selector, page::locator);
+    }
+
+    /**
+     * Cached locator for a parameterized selector
+     * @param template Selector constant containing %s placeholders
+     * @param args Values for the placeholders
+     * @return Locator bound to this page
+     */
+    protected Locator locator(String template, Object... args) {
+        return locator(selector(template, args));
+    }
+
+    /**
+     * Selector text for a parameterized selector
+     * @param template Selector constant containing %s placeholders
+     * @param args Values for the placeholders
+     * @return Selector with the placeholders filled in
+     */
+    protected static String selector(String template, Object... args) {
+        return String.format(template, args);
+    }
+
+    /**
+     * Run a page action and record its duration in the suite timings as "PageObjectClass.action";
+     * with perf.enabled, page loads before and during the action are measured by PerfMetrics
+     * @param action Name of the action, usually the method name
+     * @param step Code performing the action
+     */
+    protected void timed(String action, Runnable step) {
+        String name = getClass().getSimpleName() + "." + action;
+        PerfMetrics.beforeStep(page);
+        Timings.time(name, step);
+        PerfMetrics.afterStep(page, name);
+    }
+
+    /**
+     * Run a page query and record its duration in the suite timings as "PageObjectClass.action"
+     * @param action Name of the action, usually the method name
+     * @param step Code performing the query
+     * @return Value returned by the query
+     */
+    protected <T> T timedCall(String action, Supplier<T> step) {
+        String name = getClass().getSimpleName() + "." + action;
+        PerfMetrics.beforeStep(page);
+        T value = Timings.call(name, step);
+        PerfMetrics.afterStep(page, name);
+        return value;
+    }
+
+    /**
+     * Quote text for use inside an XPath expression, including text with quotes
+     * @param text Literal text
+     * @return XPath string literal
+     */
+    protected static String xpathLiteral(String text) {
+        if (!text.contains("'")) {
+            return "'" + text + "'";
+        }
+        if (!text.contains("\"")) {
+            return "\"" + text + "\"";
+        }
+        return "concat('" + text.replace("'", "', \"'\", '") + "')";
+    }
+
+    /**
+     * Syntax-check every selector constant of this page object class, once per run
+     * @throws IllegalStateException If a selector is invalid; the message names it
+     */
+    protected void validateDeclaredSelectors() {
+        Class<?> type = getClass();
+        if (VALIDATED.contains(type)) {
+            return;
+        }
+        Map<String, String> declared = declaredSelectors(type);
+        @SuppressWarnings("unchecked")
+        List<String> broken = (List<String>) page.evaluate(VALIDATE_SCRIPT, declared);
+        if (!broken.isEmpty()) {
+            throw new IllegalStateException("Invalid selector(s) in " + type.getSimpleName() + ": " + broken);
+        }
+        VALIDATED.add(type);
+    }
+
+    /**
+     * Selector constants declared by a page object class; templates are filled with a sample value
+     * @param type Page object class
+     * @return Constant name to selector
+     */
+    static Map<String, String> declaredSelectors(Class<?> type) {
+        Map<String, String> declared = new HashMap<>();
+        for (Field field : type.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (field.getType() != String.class || !Modifier.isStatic(modifiers) || !Modifier.isFinal(modifiers)
+                    || field.getName().endsWith("URL") || field.getName().endsWith("_KEY")) {
+                continue;
+            }
+            try {
+                field.setAccessible(true);
+                String value = (String) field.get(null);
+                declared.put(type.getSimpleName() + "." + field.getName(),
+                        value.contains("%s") ? value.replace("%s", "'sample'") : value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot read selector " + field.getName(), e);
+            }
+        }
+        return declared;
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package test.pageobjects.saucedemo;
+
+import com.microsoft.playwright.Page;
+import test.pageobjects.BasePageObjects;
+import test.utility.FrameworkConfig;
+
+public class InventoryPageObjects extends BasePageObjects {
+
+    // Page Objects Definitions
+    private static final String INVENTORY_URL = FrameworkConfig.baseUrl("saucedemo", "https://www.saucedemo.com/") + "inventory.html";
+    private static final String TITLE = "[data-test='title']";
+    private static final String INVENTORY_ITEM = ".inventory_item";
+    private static final String INVENTORY_ITEM_NAME = ".inventory_item_name";
+
+    // Constructor
+    public InventoryPageObjects(Page page) {
+        super(page);
+    }
+
+    // Getter methods for selectors
+    public String getTitleSelector() {
+        return TITLE;
+    }
+
+    // Page actions: open the inventory directly, which needs a logged in session
+    public void navigateToInventoryPage() {
+        timed("navigateToInventoryPage", () -> page.navigate(INVENTORY_URL));
+    }
+
+    public String getTitle() {
+        return timedCall("getTitle", () -> locator(TITLE).textContent());
+    }
+
+    public int getItemCount() {
+        return timedCall("getItemCount", () -> locator(INVENTORY_ITEM).count());
+    }
+
+    public String getFirstItemName() {
+        return timedCall("getFirstItemName", () -> locator(INVENTORY_ITEM_NAME).first().textContent());
+    }
+
+    public boolean isDisplayed() {
+        return page.url().contains("inventory.html");
+    }
+}
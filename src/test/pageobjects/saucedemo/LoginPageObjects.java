@@ -1,23 +1,26 @@
 package test.pageobjects.saucedemo;
 
 import com.microsoft.playwright.Page;
+import java.util.function.Consumer;
+import test.pageobjects.BasePageObjects;
+import test.utility.FrameworkConfig;
 
-public class LoginPageObjects {
-    private final Page page;
+public class LoginPageObjects extends BasePageObjects {
 
     // Page Objects Definitions
     // Element Css selector
-    private final String URL = "https://www.saucedemo.com/";
-    private final String LOGIN_BUTTON = "#login-button";
-    private final String ERROR_MESSAGE = "h3[data-test='error']";
+    private static final String URL = FrameworkConfig.baseUrl("saucedemo", "https://www.saucedemo.com/");
+    private static final String LOGIN_BUTTON = "#login-button";
+    private static final String ERROR_MESSAGE = "h3[data-test='error']";
     // Alternative using name attribute:
-    private final String USERNAME_INPUT = "[name='user-name']";
+    private static final String USERNAME_INPUT = "[name='user-name']";
     // XPath Locator/Selector
-    private final String PASSWORD_INPUT = "//input[@id='password']";
+    private static final String PASSWORD_INPUT = "//input[@id='password']";
+    private static final String ERROR_BUTTON = "[data-test='error-button']";
 
     // Constructor
     public LoginPageObjects(Page page) {
-        this.page = page;
+        super(page);
     }
 
     // Getter methods for selectors
@@ -39,30 +42,30 @@ public class LoginPageObjects {
 
     // Page actions
     public void navigateToLoginPage() {
-        page.navigate(URL);
+        timed("navigateToLoginPage", () -> page.navigate(URL));
     }
 
     // Page actions: Enter username
     public void enterUsername(String username) {
-        page.fill(USERNAME_INPUT, username);
+        timed("enterUsername", () -> locator(USERNAME_INPUT).fill(username));
     }
 
     // Page actions: Enter password
     public void enterPassword(String password) {
-        page.fill(PASSWORD_INPUT, password);
+        timed("enterPassword", () -> locator(PASSWORD_INPUT).fill(password));
     }
 
     // Page actions: Click login button
     public void clickLoginButton() {
-        page.click(LOGIN_BUTTON);
+        timed("clickLoginButton", () -> locator(LOGIN_BUTTON).click());
     }
 
     public String getErrorMessage() {
-        return page.textContent(ERROR_MESSAGE);
+        return timedCall("getErrorMessage", () -> locator(ERROR_MESSAGE).textContent());
     }
 
     public boolean isErrorMessageDisplayed() {
-        return page.isVisible(ERROR_MESSAGE);
+        return timedCall("isErrorMessageDisplayed", () -> locator(ERROR_MESSAGE).isVisible());
     }
 
     // Composite actions
@@ -75,4 +78,37 @@ public class LoginPageObjects {
     public boolean isLoginSuccessful() {
         return page.url().contains("inventory.html");
     }
+
+    // Session batching: dismiss the error and clear the form for the next data row without navigating
+    public boolean resetForNextRow() {
+        return timedCall("resetForNextRow", () -> {
+            if (!isLoginPageUrl(page.url()) || !locator(USERNAME_INPUT).isVisible()) {
+                return false;
+            }
+            if (locator(ERROR_BUTTON).isVisible()) {
+                locator(ERROR_BUTTON).click();
+            }
+            // the page owns the error; if dismissing did not remove it, let the caller start over
+            if (locator(ERROR_MESSAGE).isVisible()) {
+                return false;
+            }
+            locator(USERNAME_INPUT).fill("");
+            locator(PASSWORD_INPUT).fill("");
+            return true;
+        });
+    }
+
+    // Session cache support: login flow and logout detection for SessionCache
+    public static Consumer<Page> loginFlow(String username, String password) {
+        return page -> {
+            LoginPageObjects loginPage = new LoginPageObjects(page);
+            loginPage.navigateToLoginPage();
+            loginPage.login(username, password);
+            page.waitForURL(url -> url.contains("inventory.html"));
+        };
+    }
+
+    public static boolean isLoginPageUrl(String url) {
+        return url.equals(URL) || url.equals(URL + "index.html");
+    }
 }
@@ -1,54 +1,91 @@
 package test.pageobjects.todo;
 
 import com.microsoft.playwright.Page;
+import test.pageobjects.BasePageObjects;
+import test.utility.Fixtures;
+import test.utility.FrameworkConfig;
 
-public class TodoItemPageObjects {
-    private final Page page;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TodoItemPageObjects extends BasePageObjects {
 
     // Simple locators
-    private static final String TODO_APP_URL = "https://todo.uiineed.com/";
+    private static final String TODO_APP_URL = FrameworkConfig.baseUrl("todo", "https://todo.uiineed.com/");
+    // localStorage key holding the app's items, used for seeding
+    private static final String STORAGE_KEY = FrameworkConfig.get("todo.storageKey", "todos");
     private static final String NEW_TODO_INPUT = "//input[@placeholder='Add a to-do item...']";
     private static final String ADD_BUTTON = "//button[text()='Add']";
     private static final String TODO_LIST = "//ul[contains(@class, 'todo-list')]";
 
+    // Parameterized locators, %s is replaced by an XPath string literal
+    private static final String TODO_ITEM_BY_TEXT = "//div[normalize-space(text())=%s]";
+    private static final String DELETE_BUTTON_FOR_TODO = "//div[normalize-space(text())=%s]/following-sibling::div[contains(@class, 'todo-btn btn-delete')]";
+
     public TodoItemPageObjects(Page page) {
-        this.page = page;
+        super(page);
     }
 
     // Dynamic selectors
     public String getTodoItemByTextSelector(String todoText) {
-        return "//div[normalize-space(text())='" + todoText + "']";
+        return selector(TODO_ITEM_BY_TEXT, xpathLiteral(todoText));
     }
 
     public String getDeleteButtonForTodoSelector(String todoText) {
-        return "//div[normalize-space(text())='" + todoText + "']/following-sibling::div[contains(@class, 'todo-btn btn-delete')]";
+        return selector(DELETE_BUTTON_FOR_TODO, xpathLiteral(todoText));
     }
 
     // Actions
 
     public void refreshPage() {
-        page.reload();
+        timed("refreshPage", () -> page.reload());
     }
 
     public void navigateToTodoApp() {
-        page.navigate(TODO_APP_URL);
+        timed("navigateToTodoApp", () -> page.navigate(TODO_APP_URL));
     }
 
     public void enterTodoText(String todoText) {
-        page.fill(NEW_TODO_INPUT, todoText);
+        timed("enterTodoText", () -> locator(NEW_TODO_INPUT).fill(todoText));
     }
 
     public void clickAddButton() {
-        page.click(ADD_BUTTON);
+        timed("clickAddButton", () -> locator(ADD_BUTTON).click());
     }
 
     public void deleteTodo(String todoText) {
-        page.click(getDeleteButtonForTodoSelector(todoText));
+        timed("deleteTodo", () -> locator(getDeleteButtonForTodoSelector(todoText)).click());
     }
 
     // Verifications
     public boolean isTodoCreated(String todoText) {
-        return page.locator(getTodoItemByTextSelector(todoText)).count() > 0;
+        return timedCall("isTodoCreated", () -> locator(getTodoItemByTextSelector(todoText)).count() > 0);
+    }
+
+    // Fixtures: put todos into the app's storage before navigateToTodoApp(), without going through the UI
+    public void seedTodos(List<String> todoTexts) {
+        List<Map<String, Object>> todos = new ArrayList<>();
+        for (String todoText : todoTexts) {
+            Map<String, Object> todo = new LinkedHashMap<>();
+            todo.put("title", todoText);
+            todo.put("completed", false);
+            todos.add(todo);
+        }
+        Fixtures.seedLocalStorage(page, TODO_APP_URL, Collections.singletonMap(STORAGE_KEY, todos));
+    }
+
+    // Session batching: restore the page for the next data row without navigating
+    public boolean resetForNextRow() {
+        return timedCall("resetForNextRow", () -> {
+            if (!page.url().startsWith(TODO_APP_URL) || !locator(NEW_TODO_INPUT).isVisible()) {
+                return false;
+            }
+            locator(NEW_TODO_INPUT).fill("");
+            return true;
+        });
     }
 
     // Getters for selectors
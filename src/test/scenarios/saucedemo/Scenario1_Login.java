@@ -5,25 +5,21 @@ import org.testng.annotations.*;
 import test.pageobjects.saucedemo.LoginPageObjects;
 import test.testdata.SauceDemoTestData;
 import test.utility.Commons;
+import test.utility.SessionBatch;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 
 public class Scenario1_Login extends Commons {
 
-    private LoginPageObjects loginPage;
-
-    @BeforeClass
-    @Override
-    public void setUp() {
-        super.setUp();  // Initialize playwright, browser and page
-        loginPage = new LoginPageObjects(page);
-    }
-
     // This positive test case is for the login functionality of the SauceDemo application
     @Test(dataProvider = "loginCredentials", dataProviderClass = SauceDemoTestData.class)
     public void testLogin(String username, String password, String expectedErrorMessage) throws IOException {
         // Initialize test case in reports
         startTestCase("Positive Login Test with user: " + username);
+        setTimingTag(username);
         String screenshotPath = null;
+        LoginPageObjects loginPage = new LoginPageObjects(getPage());
 
         try {
             // Navigate to login page
@@ -32,9 +28,11 @@ public class Scenario1_Login extends Commons {
 
             // Wait for page to be fully loaded with login form
             logInfo("Waiting for login form elements");
-            waitForElementVisible(loginPage.getUsernameInputSelector());
-            waitForElementVisible(loginPage.getPasswordInputSelector());
-            waitForElementEnabled(loginPage.getLoginButtonSelector());
+            Map<String, Long> readiness = waitForElementsReady(Arrays.asList(
+                    loginPage.getUsernameInputSelector(),
+                    loginPage.getPasswordInputSelector(),
+                    loginPage.getLoginButtonSelector()));
+            logInfo("Login form ready (ms per element): " + readiness);
 
             // Perform login Test Steps
             //Step1
@@ -50,7 +48,7 @@ public class Scenario1_Login extends Commons {
             loginPage.clickLoginButton();
 
             //Step4
-            // Check for dialog and handle it if present (wait up to 3 seconds)
+            // Check for dialog and handle it if present (returns once the page settles, at most 3 seconds)
             if (checkAndHandleDialog(3000)) {
                 logInfo("Dialog was present and handled");
             } else {
@@ -76,22 +74,32 @@ public class Scenario1_Login extends Commons {
     }
 
     // Negative test case for login functionality
+    // Rows stay on the login page, so they share one loaded page
+    @SessionBatch(reset = "resetLoginForm")
     @Test(dataProvider = "loginNegativeCredsentials", dataProviderClass = SauceDemoTestData.class)
     public void testLoginNegative(String username, String password, String expectedErrorMessage) throws IOException {
         // Initialize test case in reports
         startTestCase("Negative Login Test with user: " + username);
+        setTimingTag(username);
         String screenshotPath = null;
+        LoginPageObjects loginPage = new LoginPageObjects(getPage());
 
         try {
-            // Navigate to login page
-            logInfo("Navigating to login page");
-            loginPage.navigateToLoginPage();
+            // Navigate to login page, unless the previous row left it loaded
+            if (isSessionReused()) {
+                logInfo("Reusing the login page of the previous row");
+            } else {
+                logInfo("Navigating to login page");
+                loginPage.navigateToLoginPage();
+            }
 
             // Wait for page to be fully loaded with login form
             logInfo("Waiting for login form elements");
-            waitForElementVisible(loginPage.getUsernameInputSelector());
-            waitForElementVisible(loginPage.getPasswordInputSelector());
-            waitForElementEnabled(loginPage.getLoginButtonSelector());
+            Map<String, Long> readiness = waitForElementsReady(Arrays.asList(
+                    loginPage.getUsernameInputSelector(),
+                    loginPage.getPasswordInputSelector(),
+                    loginPage.getLoginButtonSelector()));
+            logInfo("Login form ready (ms per element): " + readiness);
 
             // Perform login Test Steps
             //Step1
@@ -131,8 +139,14 @@ public class Scenario1_Login extends Commons {
         }
     }
 
+    // Reset hook for session batching, runs before a row reuses the page
+    public boolean resetLoginForm() {
+        return new LoginPageObjects(getPage()).resetForNextRow();
+    }
+
     @AfterMethod
     public void resetForNextTest() {
+        LoginPageObjects loginPage = getPage() != null ? new LoginPageObjects(getPage()) : null;
         // If we're on the inventory page, navigate back to login page for next test
         if (loginPage != null && loginPage.isLoginSuccessful()) {
             logInfo("Resetting test: Navigating back to login page");
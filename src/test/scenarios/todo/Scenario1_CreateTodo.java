@@ -5,23 +5,29 @@ import org.testng.annotations.Test;
 import test.testdata.ToDoTestData;
 import test.pageobjects.todo.TodoItemPageObjects;
 import test.utility.Commons;
+import test.utility.SessionBatch;
 
 import java.io.IOException;
 
 public class Scenario1_CreateTodo extends Commons {
-    private TodoItemPageObjects todoPage;
 
+    // Rows share one loaded page; each row deletes its own todo, so only the input needs resetting
+    @SessionBatch(reset = "resetTodoPage")
     @Test(dataProvider = "todoInputs", dataProviderClass = ToDoTestData.class)
     public void createAndDeleteTodo(String todoText) throws IOException {
         // Initialize page object
-        todoPage = new TodoItemPageObjects(page);
+        TodoItemPageObjects todoPage = new TodoItemPageObjects(getPage());
 
         // Start test case
         startTestCase("Create and Delete Todo Test with: " + todoText);
 
-        // Step 1: Launch URL
-        logInfo("Step 1: Navigating to Todo application");
-        todoPage.navigateToTodoApp();
+        // Step 1: Launch URL, unless the previous row left the app loaded
+        if (isSessionReused()) {
+            logInfo("Step 1: Reusing the Todo application page of the previous row");
+        } else {
+            logInfo("Step 1: Navigating to Todo application");
+            todoPage.navigateToTodoApp();
+        }
 
         // Wait for page to load
         waitForElementVisible(todoPage.getNewTodoInputSelector());
@@ -63,7 +69,8 @@ public class Scenario1_CreateTodo extends Commons {
         logInfo("Step 6: Verifying todo item was deleted: " + timestampedTodoText);
 
         try {
-            page.waitForTimeout(1000); // Wait for UI update
+            // Wait for the item to leave the DOM instead of sleeping
+            waitForElementDetached(todoPage.getTodoItemByTextSelector(timestampedTodoText));
 
             boolean itemStillExists = todoPage.isTodoCreated(timestampedTodoText);
             if (itemStillExists) {
@@ -80,4 +87,9 @@ public class Scenario1_CreateTodo extends Commons {
             Assert.fail("Error checking if todo item was deleted: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    // Reset hook for session batching, runs before a row reuses the page
+    public boolean resetTodoPage() {
+        return new TodoItemPageObjects(getPage()).resetForNextRow();
+    }
+}
@@ -0,0 +1,53 @@
+package test.scenarios.todo;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import test.pageobjects.todo.TodoItemPageObjects;
+import test.utility.Commons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class Scenario2_DeleteSeededTodo extends Commons {
+
+    private static final int SEEDED_TODOS = 200;
+
+    @Test
+    public void deleteTodoFromSeededList() {
+        // Initialize page object
+        TodoItemPageObjects todoPage = new TodoItemPageObjects(getPage());
+
+        // Start test case
+        startTestCase("Delete a todo from a list of " + SEEDED_TODOS + " seeded todos");
+
+        // Step 1: Seed the todos through localStorage instead of the UI
+        String seededText = addTimestampToText("Seeded todo");
+        List<String> todos = new ArrayList<>();
+        for (int i = 1; i <= SEEDED_TODOS; i++) {
+            todos.add(seededText + " #" + i);
+        }
+        logInfo("Step 1: Seeding " + SEEDED_TODOS + " todos");
+        todoPage.seedTodos(todos);
+
+        // Step 2: Launch URL
+        logInfo("Step 2: Navigating to Todo application");
+        todoPage.navigateToTodoApp();
+        String target = todos.get(SEEDED_TODOS / 2);
+        waitForElementVisible(todoPage.getTodoItemByTextSelector(target));
+
+        // Step 3: Delete one of the seeded todos through the UI
+        logInfo("Step 3: Deleting todo item: " + target);
+        todoPage.deleteTodo(target);
+        waitForElementDetached(todoPage.getTodoItemByTextSelector(target));
+
+        // Step 4: Verify the deletion survives a reload and the other todos are untouched
+        todoPage.refreshPage();
+        waitForElementVisible(todoPage.getTodoItemByTextSelector(todos.get(0)));
+        if (todoPage.isTodoCreated(target)) {
+            logFail("Todo item '" + target + "' still exists after deletion");
+            Assert.fail("Todo item was not deleted: " + target);
+        }
+        Assert.assertTrue(todoPage.isTodoCreated(todos.get(SEEDED_TODOS - 1)), "Other seeded todos should remain");
+        logPass("Todo item '" + target + "' was deleted from the seeded list");
+    }
+}
@@ -1,28 +1,20 @@
 package test.testdata;
 
+import org.testng.ITestContext;
 import org.testng.annotations.DataProvider;
+import test.utility.DataRows;
+
+import java.util.Iterator;
 
 public class SauceDemoTestData {
 
-    @DataProvider(name = "loginCredentials")
-    public Object[][] getLoginCredentials() {
-        return new Object[][] {
-            // username, password, expectedResult, expectedMessage
-            {"standard_user", "secret_sauce", null},
-            //test should fail
-            {"standard_user", "wrong_password", null},
-            //performance glitch user
-            {"performance_glitch_user", "secret_sauce", null},
-            //problem user
-            {"problem_user", "secret_sauce", null},
-        };
+    @DataProvider(name = "loginCredentials", parallel = true)
+    public Iterator<Object[]> getLoginCredentials(ITestContext context) {
+        // username, password, expectedErrorMessage; see datasets/saucedemo_logins.csv
+        return DataRows.stream(context, "saucedemo_logins.csv", "username", "password", "expectedErrorMessage");
     }
-    @DataProvider(name = "loginNegativeCredsentials")
-    public Object[][] getloginNegativeCredsentials() {
-        return new Object[][] {
-                {"locked_out_user", "secret_sauce", "Epic sadface: Sorry, this user has been locked out."},
-                {"standard_user", "wrong_password", "Epic sadface: Username and password do not match any user in this service"},
-                {"wrong_user", "secret_sauce", "Epic sadface: Username and password do not match any user in this service"}
-        };
+    @DataProvider(name = "loginNegativeCredsentials", parallel = true)
+    public Iterator<Object[]> getloginNegativeCredsentials(ITestContext context) {
+        return DataRows.stream(context, "saucedemo_negative_logins.csv", "username", "password", "expectedErrorMessage");
     }
 }
@@ -1,14 +1,15 @@
 package test.testdata;
 
+import org.testng.ITestContext;
 import org.testng.annotations.DataProvider;
+import test.utility.DataRows;
+
+import java.util.Iterator;
 
 public class ToDoTestData {
 
-    @DataProvider(name = "todoInputs")
-    public Object[][] provideTodoInputs() {
-        return new Object[][]{
-                {"This is a test Input 1"},
-                {"This is a test input 2 with a very very very long entry"}
-        };
+    @DataProvider(name = "todoInputs", parallel = true)
+    public Iterator<Object[]> provideTodoInputs(ITestContext context) {
+        return DataRows.stream(context, "todo_inputs.json", "todoText");
     }
-}
\ No newline at end of file
+}
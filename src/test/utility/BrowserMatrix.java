@@ -0,0 +1,131 @@
+package test.utility;
+
+import org.testng.IAlterSuiteListener;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs every &lt;test&gt; of the suite once per browser engine, all engines at the same time.
+ * Each &lt;test&gt; is copied per engine as "{name} [{engine}]" with a browser.engine parameter,
+ * which Commons hands to BrowserPool and adds to the report as a category. The suite then runs
+ * its tests in parallel, and each copy keeps the original parallel mode with its own thread
+ * pool, sized to what the engine's browsers cost in memory: a memory budget is shared evenly by
+ * the engines and divided by the footprint of one browser of that engine (every worker thread
+ * owns its own browser). Parallel data provider rows run on one pool shared by the whole suite,
+ * whose threads may each hold a browser of every engine, so that pool takes up to half of the
+ * smallest engine share and the test pools get the rest. A pool never grows beyond the
+ * thread-count (or data-provider-thread-count) of the original suite.
+ * Without engines the suite runs unchanged on browser.engine.
+ *
+ * Settings (or a browser.engines parameter of the suite):
+ *   browser.engines                comma separated, e.g. chromium,firefox,webkit (default none)
+ *   browser.matrix.memoryMb        memory for all browsers of the run (default half of the physical memory)
+ *   browser.{engine}.memoryMb      footprint of one browser (defaults chromium 250, firefox 350, webkit 200)
+ *   browser.{engine}.threads       fixed pool size of an engine, instead of the memory based one
+ */
+public class BrowserMatrix implements IAlterSuiteListener {
+
+    private static final Map<String, Integer> FOOTPRINT_MB = Map.of("chromium", 250, "firefox", 350, "webkit", 200);
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        for (XmlSuite suite : suites) {
+            List<String> engines = engines(suite);
+            if (!engines.isEmpty()) {
+                expand(suite, engines);
+            }
+        }
+    }
+
+    private static void expand(XmlSuite suite, List<String> engines) {
+        XmlSuite.ParallelMode parallel = suite.getParallel();
+        int maxThreads = Math.max(1, suite.getThreadCount());
+        Map<String, Integer> fitting = new HashMap<>();
+        for (String engine : engines) {
+            fitting.put(engine, fitting(engine, engines.size()));
+        }
+        int smallest = fitting.values().stream().min(Integer::compare).orElse(1);
+        int dataProviderThreads = Math.max(1, Math.min(suite.getDataProviderThreadCount(), smallest / 2));
+        Map<String, Integer> threads = new HashMap<>();
+        for (String engine : engines) {
+            int fixed = FrameworkConfig.getInt("browser." + engine + ".threads", 0);
+            threads.put(engine, fixed > 0 ? fixed : Math.max(1, Math.min(maxThreads, fitting.get(engine) - dataProviderThreads)));
+        }
+
+        List<XmlTest> originals = new ArrayList<>(suite.getTests());
+        suite.getTests().clear();
+        for (XmlTest original : originals) {
+            for (String engine : engines) {
+                XmlTest test = new XmlTest(suite);
+                test.setName(original.getName() + " [" + engine + "]");
+                Map<String, String> parameters = new HashMap<>(original.getLocalParameters());
+                parameters.put("browser.engine", engine);
+                test.setParameters(parameters);
+                List<XmlClass> classes = new ArrayList<>();
+                for (XmlClass xmlClass : original.getXmlClasses()) {
+                    classes.add((XmlClass) xmlClass.clone());
+                }
+                test.setXmlClasses(classes);
+                test.setXmlPackages(original.getXmlPackages());
+                test.setIncludedGroups(original.getIncludedGroups());
+                test.setExcludedGroups(original.getExcludedGroups());
+                test.setPreserveOrder(original.getPreserveOrder());
+                test.setParallel(original.getParallel());
+                test.setThreadCount(threads.get(engine));
+            }
+        }
+        suite.setParallel(XmlSuite.ParallelMode.TESTS);
+        suite.setThreadCount(suite.getTests().size());
+        // one data provider pool for all tests instead of a new one (with new browsers) per method
+        suite.setShareThreadPoolForDataProviders(true);
+        suite.setDataProviderThreadCount(dataProviderThreads);
+        ReportWriter.note(String.format("Browser matrix: %d tests on %s, threads per test %s, data provider threads %d (test parallel mode %s)",
+                originals.size(), engines, threads, dataProviderThreads, parallel));
+    }
+
+    private static List<String> engines(XmlSuite suite) {
+        String value = FrameworkConfig.get("browser.engines", suite.getParameter("browser.engines"));
+        Set<String> engines = new LinkedHashSet<>();
+        if (value != null) {
+            for (String engine : value.split(",")) {
+                if (!engine.isBlank()) {
+                    engines.add(engine.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        for (String engine : engines) {
+            if (!FOOTPRINT_MB.containsKey(engine)) {
+                throw new IllegalArgumentException("Unknown browser engine in browser.engines: " + engine);
+            }
+        }
+        return new ArrayList<>(engines);
+    }
+
+    /**
+     * Browsers of an engine that fit into its share of the memory budget
+     */
+    private static int fitting(String engine, int engineCount) {
+        long budgetMb = FrameworkConfig.getInt("browser.matrix.memoryMb", (int) (physicalMemoryMb() / 2));
+        int footprintMb = FrameworkConfig.getInt("browser." + engine + ".memoryMb", FOOTPRINT_MB.get(engine));
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetMb / engineCount / Math.max(1, footprintMb)));
+    }
+
+    private static long physicalMemoryMb() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize() / (1024 * 1024);
+        }
+        // without the HotSpot bean assume room for one browser per engine and thread
+        return 2L * FOOTPRINT_MB.get("firefox") * Runtime.getRuntime().availableProcessors();
+    }
+}
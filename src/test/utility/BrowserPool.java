@@ -0,0 +1,396 @@
+package test.utility;
+
+import com.microsoft.playwright.*;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suite-scoped browser lifecycle manager.
+ * Playwright objects are not thread safe, so every TestNG worker thread owns one
+ * Playwright instance and one browser per engine and BrowserProfile, launched on first use and
+ * kept until the suite ends; the browsers of a thread that finished (e.g. one of a &lt;test&gt;'s
+ * pool) are closed when the next worker starts. Tests draw a BrowserContext/Page from the
+ * worker; released contexts are reset and reused for the next test of the same engine and
+ * profile (e.g. the next data-provider row) instead of being thrown away. A context that visited
+ * more than one origin is closed instead, as a page can only clear the storage of its own
+ * origin. The engine of a test comes from the browser.engine parameter that BrowserMatrix gives
+ * each expanded &lt;test&gt;.
+ *
+ * Settings (launch and context options are settings of BrowserProfile):
+ *   browser.engine            chromium | firefox | webkit when no matrix is run (default chromium)
+ *   browser.context.reuse     recycle contexts between tests (default true)
+ *   browser.context.maxUses   tests served by one context before it is replaced (default 25)
+ */
+public final class BrowserPool {
+
+    private static final String DEFAULT_ENGINE = FrameworkConfig.get("browser.engine", "chromium").toLowerCase(Locale.ROOT);
+
+    private static final ThreadLocal<Worker> WORKER = new ThreadLocal<>();
+    private static final ThreadLocal<String> ENGINE = new ThreadLocal<>();
+    private static final Queue<Worker> WORKERS = new ConcurrentLinkedQueue<>();
+
+    private static final boolean REUSE_CONTEXTS = FrameworkConfig.getBoolean("browser.context.reuse", true);
+    private static final int MAX_CONTEXT_USES = FrameworkConfig.getInt("browser.context.maxUses", 25);
+
+    // Lifecycle statistics, reported at the end of the suite
+    private static final AtomicInteger browserLaunches = new AtomicInteger();
+    private static final AtomicLong browserLaunchNanos = new AtomicLong();
+    private static final AtomicInteger contextsCreated = new AtomicInteger();
+    private static final AtomicInteger contextsReused = new AtomicInteger();
+    private static final AtomicLong contextAcquireNanos = new AtomicLong();
+
+    // Acquire time of the page handed to the current thread, for per-test reporting
+    private static final ThreadLocal<Long> lastAcquireNanos = new ThreadLocal<>();
+
+    // true once web storage, IndexedDB and cache storage of the page's origin are empty
+    private static final String CLEAR_ORIGIN_STORAGE = String.join("\n",
+            "async () => {",
+            "  try {",
+            "    localStorage.clear();",
+            "    sessionStorage.clear();",
+            "    if (window.indexedDB) {",
+            "      for (const db of await indexedDB.databases()) {",
+            "        await new Promise((resolve, reject) => {",
+            "          const request = indexedDB.deleteDatabase(db.name);",
+            "          request.onsuccess = resolve;",
+            "          request.onerror = () => reject(request.error);",
+            "          request.onblocked = () => reject(new Error('blocked'));",
+            "        });",
+            "      }",
+            "    }",
+            "    if (window.caches) {",
+            "      for (const key of await caches.keys()) {",
+            "        await caches.delete(key);",
+            "      }",
+            "    }",
+            "    return true;",
+            "  } catch (e) {",
+            "    return false;",
+            "  }",
+            "}");
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(BrowserPool::shutdown, "browser-pool-shutdown"));
+    }
+
+    private BrowserPool() {
+    }
+
+    /**
+     * Set the browser engine of the test running on the current thread
+     * @param engine chromium, firefox or webkit; null for the browser.engine setting
+     */
+    public static void setEngine(String engine) {
+        if (engine == null) {
+            ENGINE.remove();
+        } else {
+            ENGINE.set(engine.trim().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Browser engine of the test running on the current thread
+     * @return chromium, firefox or webkit
+     */
+    public static String engine() {
+        String engine = ENGINE.get();
+        return engine != null ? engine : DEFAULT_ENGINE;
+    }
+
+    /**
+     * Get a clean page for the calling thread in the current test's profile, reusing an idle context when possible
+     * @return Page ready for use by the current test
+     */
+    public static Page acquirePage() {
+        return acquirePage(BrowserProfile.current());
+    }
+
+    /**
+     * Get a clean page for the calling thread, reusing an idle context of the same profile when possible
+     * @param profile Browser and context settings
+     * @return Page ready for use by the current test
+     */
+    public static Page acquirePage(BrowserProfile profile) {
+        long start = System.nanoTime();
+        Worker worker = worker();
+
+        Page page = worker.idle(Worker.key(profile)).pollFirst();
+        if (page != null && !page.isClosed()) {
+            contextsReused.incrementAndGet();
+        } else {
+            page = worker.newContext(profile, new Browser.NewContextOptions()).newPage();
+            contextsCreated.incrementAndGet();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        contextAcquireNanos.addAndGet(elapsed);
+        lastAcquireNanos.set(elapsed);
+        return page;
+    }
+
+    /**
+     * Get a page in a new context created with specific options (e.g. a saved storage state)
+     * and the current test's profile for everything the options leave unset.
+     * Such contexts are never recycled; release() closes them.
+     * @param options Options for the new context
+     * @return Page ready for use by the current test
+     */
+    public static Page acquirePage(Browser.NewContextOptions options) {
+        long start = System.nanoTime();
+        Worker worker = worker();
+        BrowserContext context = worker.newContext(BrowserProfile.current(), options);
+        worker.dedicated.add(context);
+        contextsCreated.incrementAndGet();
+
+        long elapsed = System.nanoTime() - start;
+        contextAcquireNanos.addAndGet(elapsed);
+        lastAcquireNanos.set(elapsed);
+        return context.newPage();
+    }
+
+    /**
+     * Give the page back to the pool. The context is reset for the next test,
+     * or closed when reuse is disabled, the reset fails or it reached its use limit.
+     * @param page Page obtained from acquirePage()
+     */
+    public static void release(Page page) {
+        if (page == null) {
+            return;
+        }
+        Worker worker = WORKER.get();
+        BrowserContext context = page.context();
+        if (worker == null || worker.dedicated.remove(context) || !REUSE_CONTEXTS || worker.uses(context) >= MAX_CONTEXT_USES || !reset(worker, page)) {
+            if (worker != null) {
+                worker.forget(context);
+            }
+            context.close();
+            return;
+        }
+        worker.idle(worker.poolKeys.get(context)).addLast(page);
+    }
+
+    /**
+     * Close the page's context on release instead of recycling it, for contexts that carry
+     * test-specific state a reset cannot remove (e.g. init scripts)
+     * @param page Page obtained from acquirePage()
+     */
+    static void discardOnRelease(Page page) {
+        Worker worker = WORKER.get();
+        if (worker != null) {
+            worker.dedicated.add(page.context());
+        }
+    }
+
+    /**
+     * Time the current thread spent getting its page, including a browser launch on first use
+     * @return Milliseconds, or -1 if no page was acquired on this thread
+     */
+    public static long lastAcquireMillis() {
+        Long nanos = lastAcquireNanos.get();
+        return nanos == null ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Human readable lifecycle statistics for the run so far
+     * @return Summary text
+     */
+    public static String summary() {
+        int launches = browserLaunches.get();
+        int created = contextsCreated.get();
+        int reused = contextsReused.get();
+        int acquired = created + reused;
+        return String.format("Browsers launched: %d (avg %d ms), contexts created: %d, contexts reused: %d, "
+                        + "avg page acquire: %d ms, JVM RSS: %s, browser RSS: %s",
+                launches,
+                launches == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(browserLaunchNanos.get() / launches),
+                created, reused,
+                acquired == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(contextAcquireNanos.get() / acquired),
+                ProcessMemory.toMb(ProcessMemory.jvmRssBytes()),
+                ProcessMemory.toMb(ProcessMemory.browserRssBytes()));
+    }
+
+    /**
+     * Close every browser and Playwright instance created during the run
+     */
+    public static void shutdown() {
+        Worker worker;
+        while ((worker = WORKERS.poll()) != null) {
+            worker.close();
+        }
+        WORKER.remove();
+        // closing the contexts wrote their recorded traffic
+        NetworkReplay.finish();
+    }
+
+    private static Worker worker() {
+        Worker worker = WORKER.get();
+        if (worker == null) {
+            closeFinishedWorkers();
+            worker = new Worker();
+            WORKER.set(worker);
+            WORKERS.add(worker);
+        }
+        return worker;
+    }
+
+    /**
+     * Close the browsers of workers whose thread is gone; nothing else can use them any more
+     */
+    private static void closeFinishedWorkers() {
+        for (Worker finished : WORKERS) {
+            if (!finished.owner.isAlive() && WORKERS.remove(finished)) {
+                finished.close();
+            }
+        }
+    }
+
+    /**
+     * Remove page routes, clear cookies, permissions and the storage of the page's origin (web
+     * storage, IndexedDB, cache storage), then park the page on about:blank
+     * @return true if the context can be reused, false if it visited another origin or its
+     *         storage could not be cleared
+     */
+    private static boolean reset(Worker worker, Page page) {
+        try {
+            BrowserContext context = page.context();
+            Set<String> visited = worker.origins.getOrDefault(context, Collections.emptySet());
+            String current = origin(page.url());
+            if (visited.size() > 1 || (!visited.isEmpty() && !visited.contains(current))) {
+                return false;
+            }
+            for (Page other : context.pages()) {
+                if (other != page) {
+                    other.close();
+                }
+            }
+            page.unrouteAll();
+            if (current != null && !Boolean.TRUE.equals(page.evaluate(CLEAR_ORIGIN_STORAGE))) {
+                return false;
+            }
+            context.clearCookies();
+            context.clearPermissions();
+            page.navigate("about:blank");
+            visited.clear();
+            return true;
+        } catch (PlaywrightException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Origin of a URL as the browser scopes storage by it
+     * @return scheme://host:port, or null for URLs without an origin (about:blank, data:)
+     */
+    private static String origin(String url) {
+        try {
+            URI uri = URI.create(url);
+            if (uri.getHost() == null || !("http".equals(uri.getScheme()) || "https".equals(uri.getScheme()))) {
+                return null;
+            }
+            int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+            return uri.getScheme() + "://" + uri.getHost().toLowerCase(Locale.ROOT) + ":" + port;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static final class Worker {
+        private final Thread owner = Thread.currentThread();
+        private final Playwright playwright = Playwright.create();
+        // keyed by "engine/profile"
+        private final Map<String, Browser> browsers = new HashMap<>();
+        private final Map<String, Deque<Page>> idle = new HashMap<>();
+        private final Map<BrowserContext, String> poolKeys = new IdentityHashMap<>();
+        private final Map<BrowserContext, Integer> useCount = new IdentityHashMap<>();
+        private final Set<BrowserContext> dedicated = Collections.newSetFromMap(new IdentityHashMap<>());
+        // origins the frames of each context navigated to since its last reset
+        private final Map<BrowserContext, Set<String>> origins = new IdentityHashMap<>();
+
+        private static String key(BrowserProfile profile) {
+            return engine() + "/" + profile.getName();
+        }
+
+        private Browser browser(BrowserProfile profile) {
+            String engine = engine();
+            return browsers.computeIfAbsent(key(profile), key -> {
+                long start = System.nanoTime();
+                Browser browser = browserType(engine).launch(profile.launchOptions(engine));
+                browserLaunchNanos.addAndGet(System.nanoTime() - start);
+                browserLaunches.incrementAndGet();
+                return browser;
+            });
+        }
+
+        private BrowserType browserType(String engine) {
+            switch (engine) {
+                case "chromium":
+                    return playwright.chromium();
+                case "firefox":
+                    return playwright.firefox();
+                case "webkit":
+                    return playwright.webkit();
+                default:
+                    throw new IllegalArgumentException("Unknown browser engine: " + engine);
+            }
+        }
+
+        private Deque<Page> idle(String key) {
+            return idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+        }
+
+        private BrowserContext newContext(BrowserProfile profile, Browser.NewContextOptions options) {
+            BrowserContext context = browser(profile).newContext(profile.applyTo(options));
+            // replay and mock routes are registered first so the profile's blocking can fall back to them
+            NetworkReplay.apply(context);
+            profile.install(context);
+            poolKeys.put(context, key(profile));
+            Set<String> visited = new HashSet<>();
+            origins.put(context, visited);
+            context.onPage(page -> page.onFrameNavigated(frame -> {
+                String origin = origin(frame.url());
+                if (origin != null) {
+                    visited.add(origin);
+                }
+            }));
+            return context;
+        }
+
+        private int uses(BrowserContext context) {
+            return useCount.merge(context, 1, Integer::sum);
+        }
+
+        private void forget(BrowserContext context) {
+            useCount.remove(context);
+            poolKeys.remove(context);
+            origins.remove(context);
+        }
+
+        private void close() {
+            try {
+                for (Browser browser : browsers.values()) {
+                    // closing a context explicitly is what writes its recorded HAR
+                    for (BrowserContext context : browser.contexts()) {
+                        context.close();
+                    }
+                    browser.close();
+                }
+            } finally {
+                playwright.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package test.utility;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Route;
+import com.microsoft.playwright.options.ReducedMotion;
+import com.microsoft.playwright.options.ViewportSize;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Browser launch and context settings used by BrowserPool.
+ * "default" loads pages as a user would. "fast" is a lightweight profile for functional runs: it
+ * runs headless, aborts image, font and media requests and requests to analytics and other
+ * third-party domains, disables CSS animations and transitions and uses a fixed viewport.
+ * The profile is chosen per test with @UseBrowserProfile (method, then class), per suite with a
+ * browser.profile parameter in the suite XML, or globally with the browser.profile setting.
+ * Blocking goes through a context route that falls back to other routes (HAR replay, mocks).
+ *
+ * Settings:
+ *   browser.profile                  profile used when a test does not choose one (default "default")
+ *   browser.headless                 run without a window (default: true for "fast" and when the CI
+ *                                    environment variable is set, false otherwise)
+ *   browser.viewport                 viewport of the default profile, e.g. 1366x768 (default Playwright's)
+ *   browser.fast.viewport            viewport of the fast profile (default 1280x720)
+ *   browser.fast.blockTypes          resource types aborted by the fast profile (default image,font,media)
+ *   browser.fast.blockDomains        domains (and their subdomains) aborted by the fast profile
+ *   browser.fast.disableAnimations   inject CSS that turns off animations and transitions (default true)
+ */
+public final class BrowserProfile {
+
+    public static final String DEFAULT = "default";
+    public static final String FAST = "fast";
+
+    private static final String DEFAULT_BLOCKED_DOMAINS = "google-analytics.com,googletagmanager.com,doubleclick.net,"
+            + "googlesyndication.com,facebook.net,connect.facebook.net,hotjar.com,segment.io,newrelic.com,"
+            + "nr-data.net,optimizely.com,fullstory.com,clarity.ms,bat.bing.com,fonts.googleapis.com,fonts.gstatic.com";
+
+    private static final String NO_ANIMATIONS_SCRIPT = "(() => {"
+            + "  const css = '*, *::before, *::after { animation-duration: 0s !important; animation-delay: 0s !important;"
+            + " transition-duration: 0s !important; transition-delay: 0s !important; scroll-behavior: auto !important; }';"
+            + "  const add = () => { const style = document.createElement('style'); style.textContent = css;"
+            + " (document.head || document.documentElement).appendChild(style); };"
+            + "  if (document.readyState === 'loading') document.addEventListener('DOMContentLoaded', add); else add();"
+            + "})()";
+
+    private static final Map<String, BrowserProfile> PROFILES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<BrowserProfile> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final boolean headless;
+    private final List<String> launchArgs;
+    private final ViewportSize viewport;
+    private final Set<String> blockedTypes;
+    private final List<String> blockedDomains;
+    private final boolean disableAnimations;
+
+    private BrowserProfile(String name, boolean headless, List<String> launchArgs, ViewportSize viewport,
+                           Set<String> blockedTypes, List<String> blockedDomains, boolean disableAnimations) {
+        this.name = name;
+        this.headless = headless;
+        this.launchArgs = launchArgs;
+        this.viewport = viewport;
+        this.blockedTypes = blockedTypes;
+        this.blockedDomains = blockedDomains;
+        this.disableAnimations = disableAnimations;
+    }
+
+    /**
+     * Profile by name
+     * @param name "default" or "fast"
+     * @return Profile built from the current settings
+     */
+    public static BrowserProfile named(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        return PROFILES.computeIfAbsent(key, BrowserProfile::create);
+    }
+
+    /**
+     * Profile of a test: @UseBrowserProfile on the method, then on its class, then the suite
+     * parameter, then the browser.profile setting
+     * @param method Test method
+     * @param suiteProfile browser.profile parameter of the &lt;test&gt;/&lt;suite&gt;, or null
+     * @return Profile for the test
+     */
+    public static BrowserProfile forTest(Method method, String suiteProfile) {
+        UseBrowserProfile annotation = method.getAnnotation(UseBrowserProfile.class);
+        if (annotation == null) {
+            annotation = method.getDeclaringClass().getAnnotation(UseBrowserProfile.class);
+        }
+        if (annotation != null) {
+            return named(annotation.value());
+        }
+        return named(suiteProfile != null ? suiteProfile : FrameworkConfig.get("browser.profile", DEFAULT));
+    }
+
+    /**
+     * Profile of the test running on the current thread
+     * @return Profile set by Commons, or the browser.profile setting outside of tests
+     */
+    public static BrowserProfile current() {
+        BrowserProfile profile = CURRENT.get();
+        return profile != null ? profile : named(FrameworkConfig.get("browser.profile", DEFAULT));
+    }
+
+    /**
+     * Set the profile of the test running on the current thread
+     * @param profile Profile, null to clear it
+     */
+    public static void setCurrent(BrowserProfile profile) {
+        if (profile == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(profile);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Options for launching this profile's browser
+     * @param engine chromium, firefox or webkit; the extra command line switches are Chromium's
+     * @return Launch options
+     */
+    BrowserType.LaunchOptions launchOptions(String engine) {
+        BrowserType.LaunchOptions options = new BrowserType.LaunchOptions().setHeadless(headless);
+        return "chromium".equals(engine) ? options.setArgs(launchArgs) : options;
+    }
+
+    /**
+     * Fill in this profile's context options that the caller did not set
+     * @param options Options for a new context
+     * @return The same options
+     */
+    Browser.NewContextOptions applyTo(Browser.NewContextOptions options) {
+        if (viewport != null && options.viewportSize == null) {
+            options.setViewportSize(viewport);
+        }
+        if (disableAnimations && options.reducedMotion == null) {
+            options.setReducedMotion(ReducedMotion.REDUCE);
+        }
+        return options;
+    }
+
+    /**
+     * Install request blocking and the animation stylesheet on a new context
+     * @param context Context created with applyTo options
+     */
+    void install(BrowserContext context) {
+        if (!blockedTypes.isEmpty() || !blockedDomains.isEmpty()) {
+            context.route("**/*", this::filter);
+        }
+        if (disableAnimations) {
+            context.addInitScript(NO_ANIMATIONS_SCRIPT);
+        }
+    }
+
+    private void filter(Route route) {
+        if (blockedTypes.contains(route.request().resourceType()) || isBlockedHost(route.request().url())) {
+            route.abort("blockedbyclient");
+        } else {
+            route.fallback();
+        }
+    }
+
+    private boolean isBlockedHost(String url) {
+        int schemeEnd = url.indexOf("://");
+        if (schemeEnd < 0) {
+            return false;
+        }
+        int hostStart = schemeEnd + 3;
+        int hostEnd = hostStart;
+        while (hostEnd < url.length() && "/:?#".indexOf(url.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        String host = url.substring(hostStart, hostEnd).toLowerCase(Locale.ROOT);
+        for (String domain : blockedDomains) {
+            if (host.equals(domain) || host.endsWith("." + domain)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static BrowserProfile create(String name) {
+        boolean ci = System.getenv("CI") != null;
+        switch (name) {
+            case DEFAULT:
+                return new BrowserProfile(DEFAULT,
+                        FrameworkConfig.getBoolean("browser.headless", ci),
+                        Collections.emptyList(),
+                        viewport(FrameworkConfig.get("browser.viewport", null)),
+                        Collections.emptySet(), Collections.emptyList(), false);
+            case FAST:
+                return new BrowserProfile(FAST,
+                        FrameworkConfig.getBoolean("browser.headless", true),
+                        Arrays.asList("--disable-extensions", "--disable-background-networking", "--disable-component-update",
+                                "--disable-default-apps", "--mute-audio", "--no-first-run"),
+                        viewport(FrameworkConfig.get("browser.fast.viewport", "1280x720")),
+                        new HashSet<>(list(FrameworkConfig.get("browser.fast.blockTypes", "image,font,media"))),
+                        list(FrameworkConfig.get("browser.fast.blockDomains", DEFAULT_BLOCKED_DOMAINS)),
+                        FrameworkConfig.getBoolean("browser.fast.disableAnimations", true));
+            default:
+                throw new IllegalArgumentException("Unknown browser profile: " + name);
+        }
+    }
+
+    private static ViewportSize viewport(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] size = value.toLowerCase(Locale.ROOT).split("x");
+        if (size.length != 2) {
+            throw new IllegalArgumentException("Viewport must be WIDTHxHEIGHT: " + value);
+        }
+        return new ViewportSize(Integer.parseInt(size[0].trim()), Integer.parseInt(size[1].trim()));
+    }
+
+    private static List<String> list(String value) {
+        List<String> items = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                items.add(item.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return items;
+    }
+}
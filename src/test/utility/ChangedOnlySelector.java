@@ -0,0 +1,176 @@
+package test.utility;
+
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Changed-only mode: runs just the tests affected by the files changed since a git base, plus the
+ * tests that failed recently, e.g. for quick pull request feedback.
+ * Changed files are taken from git (commits since the merge base, uncommitted and untracked
+ * files) and mapped to tests:
+ *   test.scenarios.*      the tests of that class
+ *   test.pageobjects.*    tests that constructed the page object in their last run (RunHistory)
+ *   test.testdata.*       tests whose data provider is declared in that class
+ *   data files            tests whose data provider read the file in its last run
+ * Any other change under the source folder (utilities, BasePageObjects, fixtures), pom.xml or a
+ * suite XML may affect every test, so the whole suite runs; changes outside the source folder
+ * (docs, test-output) and visual baselines, which the tests record themselves, are ignored. Tests without run history always run. When git cannot be
+ * asked the whole suite runs.
+ *
+ * Settings:
+ *   impact.changedOnly          only run affected tests (default false)
+ *   impact.base                 git revision the changes are taken from (default origin/main)
+ *   impact.sourceDir            source folder as given to git (default src)
+ *   impact.failedWithinHours    tests that failed this recently always run (default 24)
+ */
+public class ChangedOnlySelector implements IMethodInterceptor {
+
+    static final boolean ENABLED = FrameworkConfig.getBoolean("impact.changedOnly", false);
+    private static final String BASE = FrameworkConfig.get("impact.base", "origin/main");
+    private static final String SOURCE_DIR = FrameworkConfig.get("impact.sourceDir", "src").replaceAll("/+$", "") + "/";
+    // as VisualRegression resolves it, without loading its baselines
+    private static final String BASELINE_DIR = RunHistory.relativePath(Paths.get(FrameworkConfig.get("visual.baselineDir",
+            System.getProperty("user.dir") + "/src/test/visual-baselines"))) + "/";
+    private static final long FAILED_WITHIN_MILLIS = TimeUnit.HOURS.toMillis(FrameworkConfig.getInt("impact.failedWithinHours", 24));
+
+    private static Changes changes;
+
+    /**
+     * Changed files sorted by what they affect
+     */
+    private static final class Changes {
+        final Set<String> files = new TreeSet<>();
+        final Set<String> scenarios = new TreeSet<>();
+        final Set<String> pageObjects = new TreeSet<>();
+        final Set<String> testData = new TreeSet<>();
+        final Set<String> dataFiles = new TreeSet<>();
+        // first change that affects every test, null if there is none
+        String global;
+    }
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!ENABLED) {
+            return methods;
+        }
+        Changes changed = changes();
+        if (changed.global != null) {
+            ReportWriter.note(String.format("Changed-only: running all %d tests of %s (%s)", methods.size(), context.getName(), changed.global));
+            return methods;
+        }
+        RunHistory history = RunHistory.shared();
+        List<IMethodInstance> selected = new ArrayList<>();
+        for (IMethodInstance instance : methods) {
+            if (isAffected(instance.getMethod(), history.get(RunHistory.key(instance.getMethod())), changed)) {
+                selected.add(instance);
+            }
+        }
+        ReportWriter.note(String.format("Changed-only: running %d of %d tests of %s (%d changed files)",
+                selected.size(), methods.size(), context.getName(), changed.files.size()));
+        return selected;
+    }
+
+    private static boolean isAffected(ITestNGMethod method, RunHistory.Entry entry, Changes changed) {
+        if (entry == null || changed.scenarios.contains(method.getRealClass().getName())) {
+            return true;
+        }
+        // a test that did not pass last time runs until it does
+        if (!"PASS".equals(entry.outcome)
+                || (entry.lastFailedAt > 0 && System.currentTimeMillis() - entry.lastFailedAt <= FAILED_WITHIN_MILLIS)) {
+            return true;
+        }
+        String providerClass = dataProviderClass(method);
+        return (providerClass != null && changed.testData.contains(providerClass))
+                || entry.pageObjects.stream().anyMatch(changed.pageObjects::contains)
+                || entry.dataFiles.stream().anyMatch(changed.dataFiles::contains);
+    }
+
+    private static String dataProviderClass(ITestNGMethod method) {
+        Method javaMethod = method.getConstructorOrMethod().getMethod();
+        Test test = javaMethod == null ? null : javaMethod.getAnnotation(Test.class);
+        if (test == null || test.dataProvider().isEmpty()) {
+            return null;
+        }
+        return test.dataProviderClass() == Object.class ? method.getRealClass().getName() : test.dataProviderClass().getName();
+    }
+
+    private static synchronized Changes changes() {
+        if (changes == null) {
+            changes = new Changes();
+            try {
+                List<String> files = new ArrayList<>();
+                files.addAll(git("diff", "--name-only", "--relative", BASE + "...HEAD"));
+                files.addAll(git("diff", "--name-only", "--relative", "HEAD"));
+                files.addAll(git("ls-files", "--others", "--exclude-standard"));
+                files.forEach(file -> classify(file, changes));
+            } catch (IOException e) {
+                changes.global = "git diff against " + BASE + " failed (" + e.getMessage() + ")";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                changes.global = "git diff was interrupted";
+            }
+        }
+        return changes;
+    }
+
+    private static void classify(String file, Changes changed) {
+        if (file.startsWith(BASELINE_DIR) || !changed.files.add(file)) {
+            return;
+        }
+        boolean global = false;
+        if (file.startsWith(SOURCE_DIR) && file.endsWith(".java")) {
+            String className = file.substring(SOURCE_DIR.length(), file.length() - ".java".length()).replace('/', '.');
+            if (className.startsWith("test.scenarios.")) {
+                changed.scenarios.add(className);
+            } else if (className.startsWith("test.pageobjects.") && !className.equals("test.pageobjects.BasePageObjects")) {
+                changed.pageObjects.add(className);
+            } else if (className.startsWith("test.testdata.")) {
+                changed.testData.add(className);
+            } else {
+                global = true;
+            }
+        } else if (file.startsWith(SOURCE_DIR + "test/testdata/")) {
+            changed.dataFiles.add(file);
+        } else {
+            global = file.startsWith(SOURCE_DIR) || file.equals("pom.xml") || file.endsWith("TestNG.xml");
+        }
+        if (global && changed.global == null) {
+            changed.global = file + " changed";
+        }
+    }
+
+    private static List<String> git(String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(line.trim());
+                }
+            }
+        }
+        if (process.waitFor() != 0) {
+            throw new IOException(String.join(" ", command) + ": " + String.join(" ", lines));
+        }
+        return lines;
+    }
+}
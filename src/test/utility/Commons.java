@@ -1,70 +1,281 @@
 package test.utility;
 
 import com.aventstack.extentreports.ExtentReports;
-import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.Status;
 import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import com.aventstack.extentreports.reporter.JsonFormatter;
 import com.microsoft.playwright.*;
+import com.microsoft.playwright.assertions.LocatorAssertions;
+import com.microsoft.playwright.assertions.PlaywrightAssertions;
 import com.microsoft.playwright.options.WaitForSelectorState;
+import com.microsoft.playwright.options.WaitUntilState;
+import org.testng.ITestContext;
 import org.testng.ITestResult;
 import org.testng.annotations.*;
 
-import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class Commons {
     public static ExtentReports extent;
     public static ExtentSparkReporter rpt;
-    public static ExtentTest logger;
-    public Test testclass;
+    private static final ThreadLocal<ReportWriter.TestHandle> logger = new ThreadLocal<>();
+    private static final ThreadLocal<Test> testclass = new ThreadLocal<>();
 
-    // Playwright objects
-    protected Playwright playwright;
-    protected Browser browser;
-    protected Page page;
+    // Playwright page of the test running on the current thread
+    private static final ThreadLocal<Page> currentPage = new ThreadLocal<>();
+    // Set while a failed test is retried with tracing, see FlakyRetry
+    private static final ThreadLocal<Boolean> retryAttempt = new ThreadLocal<>();
+    // Set when a data row runs on the page of the previous row, see SessionBatch
+    private static final ThreadLocal<Boolean> sessionReused = new ThreadLocal<>();
+    // Engine given by BrowserMatrix to the running <test>, null outside a matrix run
+    private static final ThreadLocal<String> matrixEngine = new ThreadLocal<>();
 
     // Default timeout values
     protected final int DEFAULT_TIMEOUT = 10000; // 10 seconds
     protected final int POLLING_INTERVAL = 500; // 0.5 second
+    protected final int NETWORK_QUIET_MS = FrameworkConfig.getInt("wait.network.quietMs", 300);
 
     @BeforeSuite
     public void StartTest() throws IOException {
-        rpt = new ExtentSparkReporter("./test-output/TestReport.html");
-        extent = new ExtentReports();
-        extent.attachReporter(rpt);
-    }
-
-    @BeforeClass
-    public void setUp() {
-        playwright = Playwright.create();
-        browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
-                .setHeadless(false));
-        page = browser.newPage();
+        if (ReportWriter.writesExtent()) {
+            rpt = new ExtentSparkReporter(FrameworkConfig.outputDir().resolve("TestReport.html").toString());
+            extent = new ExtentReports();
+            extent.attachReporter(rpt);
+            if (FrameworkConfig.getBoolean("report.json", false)) {
+                // JSON archive used by ShardedSuiteRunner to merge the reports of several JVMs
+                extent.attachReporter(new JsonFormatter(FrameworkConfig.outputDir().resolve("extent.json").toString()));
+            }
+        }
+        ReportWriter.start(extent);
     }
 
     @BeforeMethod
-    public void beforeMethod(Method method) throws IOException {
-        testclass = method.getAnnotation(Test.class);
+    public void beforeMethod(Method method, ITestContext context) throws IOException {
+        RunHistory.startTest();
+        testclass.set(method.getAnnotation(Test.class));
+        BrowserProfile.setCurrent(BrowserProfile.forTest(method, context.getCurrentXmlTest().getParameter("browser.profile")));
+        matrixEngine.set(context.getCurrentXmlTest().getParameter("browser.engine"));
+        BrowserPool.setEngine(matrixEngine.get());
+        boolean retry = FlakyRetry.takeRetryAttempt();
+        retryAttempt.set(retry);
+        Page page = retry ? null : SessionBatcher.take(method);
+        if (page != null) {
+            currentPage.set(page);
+            if (!SessionBatcher.reset(this, method)) {
+                BrowserPool.release(page);
+                page = null;
+            }
+        }
+        sessionReused.set(page != null);
+        if (page == null) {
+            page = Timings.call("browser.acquirePage", retry ? FlakyRetry::acquireDiagnosticPage : BrowserPool::acquirePage);
+        }
+        DialogManager.forPage(page).reset();
+        NetworkTracker.forPage(page);
+        currentPage.set(page);
+        PerfMetrics.startTest(page);
+        PerfMetrics.setInTestBody(true);
     }
 
     @AfterMethod
     public void getResult(ITestResult result) throws IOException {
-        ExceptionCategory(result);
-        extent.flush();
+        PerfMetrics.setInTestBody(false);
+        try {
+            if (isSessionReused()) {
+                logInfo("Page reused from the previous data row, browser RSS: "
+                        + ProcessMemory.toMb(ProcessMemory.browserRssBytes()));
+            } else {
+                logInfo(String.format("Browser context ready in %d ms, browser RSS: %s",
+                        BrowserPool.lastAcquireMillis(), ProcessMemory.toMb(ProcessMemory.browserRssBytes())));
+            }
+            if (isRetryAttempt() && currentPage.get() != null) {
+                ReportWriter.TestHandle test = logger.get();
+                for (String link : FlakyRetry.collectDiagnostics(currentPage.get(),
+                        test != null ? test.getName() : result.getMethod().getMethodName())) {
+                    logInfo(link);
+                }
+            }
+            if (PerfMetrics.ENABLED) {
+                ReportWriter.TestHandle test = logger.get();
+                for (String violation : PerfMetrics.finishTest(currentPage.get(),
+                        test != null ? test.getName() : result.getMethod().getQualifiedName())) {
+                    if (test != null) {
+                        ReportWriter.log(test, Status.WARNING, violation);
+                    }
+                }
+                String perfTable = PerfMetrics.toHtml();
+                if (perfTable != null) {
+                    logInfo(perfTable);
+                }
+            }
+            ExceptionCategory(result);
+        } finally {
+            Fixtures.cleanup();
+            if (!SessionBatcher.keep(result, currentPage.get(), !isRetryAttempt())) {
+                BrowserPool.release(currentPage.get());
+            }
+            currentPage.remove();
+            retryAttempt.remove();
+            sessionReused.remove();
+            logger.remove();
+            testclass.remove();
+            BrowserProfile.setCurrent(null);
+            BrowserPool.setEngine(null);
+            matrixEngine.remove();
+            Timings.setTag(null);
+            // last @AfterMethod of the test, so page objects of subclass hooks are included
+            RunHistory.shared().finishTest(result);
+        }
     }
 
-    @AfterClass
+    @AfterSuite
     public void tearDown() {
-        if (page != null) {
-            page.close();
+        String summary = BrowserPool.summary();
+        ReportWriter.TestHandle lifecycle = ReportWriter.createTest("Browser lifecycle", "");
+        ReportWriter.log(lifecycle, Status.INFO, summary);
+        ScreenshotService.shutdown();
+        ReportWriter.log(lifecycle, Status.INFO, ScreenshotService.metrics());
+        String batching = SessionBatcher.summary();
+        if (batching != null) {
+            ReportWriter.log(lifecycle, Status.INFO, batching);
+        }
+        if (VisualRegression.hasRun()) {
+            ReportWriter.log(lifecycle, Status.INFO, VisualRegression.metrics());
+        }
+        long makespan = DurationRecorder.makespanMillis();
+        if (makespan >= 0) {
+            ReportWriter.log(lifecycle, Status.INFO, "Suite makespan: " + makespan + " ms");
         }
-        if (browser != null) {
-            browser.close();
+        String history = RunHistory.shared().summary();
+        if (history != null) {
+            ReportWriter.log(lifecycle, Status.INFO, "Run history: " + history);
         }
-        if (playwright != null) {
-            playwright.close();
+        for (String note : ReportWriter.takeNotes()) {
+            ReportWriter.log(lifecycle, Status.INFO, note);
         }
+        ReportWriter.finish(lifecycle);
+        try {
+            Timings.export(FrameworkConfig.outputDir());
+            PerfMetrics.export(FrameworkConfig.outputDir());
+        } catch (IOException e) {
+            System.err.println("Failed to export step timings: " + e.getMessage());
+        }
+        List<String> flaky = FlakyRetry.flakyTests();
+        if (!flaky.isEmpty()) {
+            ReportWriter.TestHandle flakyEntry = ReportWriter.createTest("Flaky tests", "Failed first, passed on retry");
+            for (String test : flaky) {
+                ReportWriter.log(flakyEntry, Status.WARNING, test);
+            }
+            ReportWriter.finish(flakyEntry);
+        }
+        ReportWriter.TestHandle timings = ReportWriter.createTest("Step timings", "Latency percentiles per action");
+        ReportWriter.log(timings, Status.INFO, Timings.toHtml());
+        ReportWriter.finish(timings);
+        ReportWriter.shutdown();
+        BrowserPool.shutdown();
+        LocalAppServer.stop();
+    }
+
+    /**
+     * Page of the test running on the current thread
+     * @return Playwright page, or null outside of a test method
+     */
+    protected Page getPage() {
+        return currentPage.get();
+    }
+
+    /**
+     * Replace the current test's page with one that is already logged in.
+     * The login flow runs through the UI only when no valid cached session exists for the user.
+     * @param username User whose session is used, also the cache key
+     * @param loginFlow Drives the login on a fresh page
+     * @param isLoggedOutUrl Recognizes the login page URL; reaching it invalidates the cached session
+     * @return The authenticated page, also returned by getPage() from now on
+     */
+    protected Page startAuthenticatedSession(String username, Consumer<Page> loginFlow, Predicate<String> isLoggedOutUrl) {
+        BrowserPool.release(currentPage.get());
+        Page page = SessionCache.openAuthenticatedPage(username, loginFlow, isLoggedOutUrl);
+        if (isRetryAttempt()) {
+            FlakyRetry.startTracing(page);
+        }
+        DialogManager.forPage(page).reset();
+        NetworkTracker.forPage(page);
+        currentPage.set(page);
+        if (PerfMetrics.ENABLED) {
+            PerfMetrics.watch(page);
+        }
+        logInfo("Started authenticated session for user: " + username);
+        return page;
+    }
+
+    /**
+     * Create a page object on first use only, so tests that never touch it pay nothing
+     * @param factory Page object constructor, e.g. LoginPageObjects::new
+     * @return Memoizing supplier bound to the current page
+     */
+    protected <T> Supplier<T> lazyPageObject(Function<Page, T> factory) {
+        Page page = getPage();
+        return new Supplier<T>() {
+            private T instance;
+
+            @Override
+            public T get() {
+                if (instance == null) {
+                    instance = factory.apply(page);
+                }
+                return instance;
+            }
+        };
+    }
+
+    /**
+     * Tag the step timings of the current test, e.g. with the data row's user name,
+     * so the same step can be compared across rows in the timing report
+     * @param tag Tag value
+     */
+    protected void setTimingTag(String tag) {
+        Timings.setTag(tag);
+    }
+
+    /**
+     * Whether the test running on the current thread is a retry of a failed attempt
+     * @return true while retrying with tracing
+     */
+    protected boolean isRetryAttempt() {
+        return Boolean.TRUE.equals(retryAttempt.get());
+    }
+
+    /**
+     * Whether this data row runs on the page left by the previous row of the same @SessionBatch
+     * test method, already restored by its reset hook; such rows can skip their initial navigation
+     * @return true if the page was reused
+     */
+    protected boolean isSessionReused() {
+        return Boolean.TRUE.equals(sessionReused.get());
+    }
+
+    /**
+     * Report entry of the test running on the current thread
+     * @return Handle created by startTestCase, or null if none was started
+     */
+    public static ReportWriter.TestHandle getLogger() {
+        return logger.get();
+    }
+
+    /**
+     * Test annotation of the method running on the current thread
+     * @return Test annotation, or null outside of a test method
+     */
+    public Test getTestAnnotation() {
+        return testclass.get();
     }
 
     /**
@@ -73,24 +284,40 @@ public class Commons {
      * @throws IOException If an error occurs during file operations
      */
     public void ExceptionCategory(ITestResult result) throws IOException {
+        ReportWriter.TestHandle test = logger.get();
+        if (test == null) {
+            return;
+        }
         if (result.getStatus() == ITestResult.FAILURE) {
-            logger.fail("Test Failed");
+            ReportWriter.log(test, Status.FAIL, "Test Failed");
+        } else if (result.getStatus() == ITestResult.SKIP && result.wasRetried()) {
+            ReportWriter.log(test, Status.WARNING, "Test Failed, retrying with tracing enabled");
+            if (result.getThrowable() != null) {
+                ReportWriter.log(test, Status.WARNING, result.getThrowable());
+            }
         } else if (result.getStatus() == ITestResult.SKIP) {
-            logger.skip("Test Skipped");
-            logger.skip(result.getThrowable());
+            ReportWriter.log(test, Status.SKIP, "Test Skipped");
+            if (result.getThrowable() != null) {
+                ReportWriter.log(test, Status.SKIP, result.getThrowable());
+            }
+        } else if (result.getStatus() == ITestResult.SUCCESS && isRetryAttempt()) {
+            FlakyRetry.markFlaky(result);
+            ReportWriter.log(test, Status.WARNING, "Test Passed on retry - flaky");
         } else if (result.getStatus() == ITestResult.SUCCESS) {
-            logger.pass("Test Passed");
+            ReportWriter.log(test, Status.PASS, "Test Passed");
         }
 
-        extent.flush();
+        // The report is written in batches by ReportWriter
+        ReportWriter.finish(test);
     }
     /**
      * Log test step with info status
      * @param stepDescription Description of the test step
      */
     public void logInfo(String stepDescription) {
-        if (logger != null) {
-            logger.info(stepDescription);
+        ReportWriter.TestHandle test = logger.get();
+        if (test != null) {
+            ReportWriter.log(test, Status.INFO, stepDescription);
         }
     }
     /**
@@ -98,13 +325,17 @@ public class Commons {
      * @param stepDescription Description of the test step
      */
     public void logPass(String stepDescription) {
-        if (logger != null) {
-            logger.pass(stepDescription);
+        ReportWriter.TestHandle test = logger.get();
+        if (test != null) {
+            ReportWriter.log(test, Status.PASS, stepDescription);
+            if (!ScreenshotService.shouldCapture(true)) {
+                return;
+            }
             try {
                 String screenshotPath = scrollAndCaptureScreenshot("PASS_" + stepDescription.replaceAll("[^a-zA-Z0-9]", "_"));
-                logger.addScreenCaptureFromPath(screenshotPath);
+                ReportWriter.attachScreenshot(test, screenshotPath);
             } catch (IOException e) {
-                logger.info("Failed to capture screenshot: " + e.getMessage());
+                logInfo("Failed to capture screenshot: " + e.getMessage());
             }
         }
     }
@@ -114,13 +345,17 @@ public class Commons {
      * @param stepDescription Description of the test step
      */
     public void logFail(String stepDescription) {
-        if (logger != null) {
-            logger.fail(stepDescription);
+        ReportWriter.TestHandle test = logger.get();
+        if (test != null) {
+            ReportWriter.log(test, Status.FAIL, stepDescription);
+            if (!ScreenshotService.shouldCapture(false)) {
+                return;
+            }
             try {
                 String screenshotPath = scrollAndCaptureScreenshot("FAIL_" + stepDescription.replaceAll("[^a-zA-Z0-9]", "_"));
-                logger.addScreenCaptureFromPath(screenshotPath);
+                ReportWriter.attachScreenshot(test, screenshotPath);
             } catch (IOException e) {
-                logger.info("Failed to capture screenshot: " + e.getMessage());
+                logInfo("Failed to capture screenshot: " + e.getMessage());
             }
         }
     }
@@ -131,35 +366,76 @@ public class Commons {
      */
     public void startTestCase(String testName, String... description) {
         String desc = description.length > 0 ? description[0] : "";
-        logger = extent.createTest(testName, desc);
+        String name = isRetryAttempt() ? testName + " (retry)" : testName;
+        String engine = matrixEngine.get();
+        logger.set(engine == null
+                ? ReportWriter.createTest(name, desc)
+                : ReportWriter.createTest(name + " [" + engine + "]", desc, engine));
     }
     /**
-     * Capture screenshot and save it in the specified directory
-     * @param fileName Name of the screenshot file
-     * @return Path to the saved screenshot
+     * Capture screenshot and save it in the specified directory.
+     * The file is encoded and written in the background by ScreenshotService.
+     * @param fileName Name of the screenshot file, without extension
+     * @return Path to the saved screenshot, relative to the report
      * @throws IOException If an error occurs during file operations
      */
     public String scrollAndCaptureScreenshot(String fileName) throws IOException {
-        // Create screenshots directory if it doesn't exist
-        File screenshotDir = new File(System.getProperty("user.dir") + "/test-output/screenshots");
-        if (!screenshotDir.exists()) {
-            screenshotDir.mkdirs();
+        long start = System.nanoTime();
+        try {
+            return ScreenshotService.capture(getPage(), fileName);
+        } finally {
+            Timings.record("screenshot.capture", System.nanoTime() - start);
         }
+    }
+    /**
+     * Compare the current page with its stored baseline and fail the test on a visual difference.
+     * The first run of a check records the baseline; a failing check attaches the diff image to the report.
+     * @param name Check name, unique per page state
+     */
+    protected void assertVisualMatch(String name) {
+        assertVisualMatch(name, new VisualRegression.Options());
+    }
 
-        // Scroll to bottom of page using Playwright
-        page.evaluate("window.scrollTo(0, document.body.scrollHeight)");
-
-        // Capture screenshot using Playwright
-        String fileNamePath = "screenshots/" + fileName + ".png";
-        String absolutePath = System.getProperty("user.dir") + "/test-output/" + fileNamePath;
-
-        page.screenshot(new Page.ScreenshotOptions()
-                .setPath(Paths.get(absolutePath))
-                .setFullPage(true));
-
-        // Return just the filename portion for use in the report
-        return fileNamePath;
+    /**
+     * Compare the current page with its stored baseline and fail the test on a visual difference
+     * @param name Check name, unique per page state
+     * @param options Thresholds, ignore regions and masked elements
+     */
+    protected void assertVisualMatch(String name, VisualRegression.Options options) {
+        VisualRegression.Result result = Timings.call("visual.check", () -> VisualRegression.check(getPage(), name, options));
+        ReportWriter.TestHandle test = logger.get();
+        if (result.isPassed()) {
+            logInfo(result.getMessage());
+            return;
+        }
+        if (test != null) {
+            ReportWriter.log(test, Status.FAIL, result.getMessage());
+            if (result.getDiffPath() != null) {
+                ReportWriter.attachScreenshot(test, result.getDiffPath());
+            }
+        }
+        throw new AssertionError(result.getMessage());
+    }
+    /**
+     * Fail the test if a page load of this test whose URL contains urlPart exceeds a performance budget.
+     * Works without perf.enabled by measuring the current document.
+     * @param urlPart Part of the page URL, e.g. inventory.html
+     * @param metric Metric name, e.g. lcp, load, ttfb, cls, jsHeapMb, cdp.ScriptDuration (see PerfMetrics)
+     * @param max Largest accepted value, milliseconds for timings
+     */
+    protected void assertPerfBudget(String urlPart, String metric, double max) {
+        try {
+            PerfMetrics.assertBudget(getPage(), urlPart, metric, max);
+            logInfo(String.format("Performance budget met on %s: %s <= %s", urlPart, metric, max));
+        } catch (AssertionError e) {
+            ReportWriter.TestHandle test = logger.get();
+            if (test != null) {
+                ReportWriter.log(test, Status.FAIL, e.getMessage());
+            }
+            throw e;
+        }
     }
+
     /**
      * Wait for an element to be visible
      * @param selector CSS selector of the element
@@ -167,24 +443,31 @@ public class Commons {
      */
     protected void waitForElementVisible(String selector, int... timeout) {
         int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
-        page.waitForSelector(selector, new Page.WaitForSelectorOptions()
+        Timings.time("wait.elementVisible", () -> getPage().waitForSelector(selector, new Page.WaitForSelectorOptions()
                 .setState(WaitForSelectorState.VISIBLE)
-                .setTimeout(timeoutMs));
+                .setTimeout(timeoutMs)));
     }
     /**
      * Wait for an element to be enabled
-     * @param selector CSS selector of the element
+     * @param selector Selector of the element
      * @param timeout Optional timeout in milliseconds
      */
     protected void waitForElementEnabled(String selector, int... timeout) {
         int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
-        page.waitForSelector(selector, new Page.WaitForSelectorOptions()
-                .setState(WaitForSelectorState.ATTACHED)
-                .setTimeout(timeoutMs));
-
-        // Additionally check if element is enabled
-        page.waitForFunction("selector => !document.querySelector(selector).disabled",
-                selector, new Page.WaitForFunctionOptions().setTimeout(timeoutMs));
+        // Checked inside the page in one round trip; Playwright-only selectors fall back to a locator wait
+        Timings.time("wait.elementEnabled",
+                () -> ElementProbe.awaitReady(getPage(), Collections.singletonList(selector), false, timeoutMs));
+    }
+    /**
+     * Wait for several elements to be visible and enabled within one shared timeout, checking all
+     * CSS and XPath selectors in one browser round trip
+     * @param selectors Selectors of the elements
+     * @param timeout Optional timeout in milliseconds
+     * @return Milliseconds it took each selector to become ready, in input order
+     */
+    protected Map<String, Long> waitForElementsReady(List<String> selectors, int... timeout) {
+        int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
+        return Timings.call("wait.elementsReady", () -> ElementProbe.awaitReady(getPage(), selectors, true, timeoutMs));
     }
     /**
      * Wait for the URL to contain specific text
@@ -194,50 +477,108 @@ public class Commons {
     protected void waitForUrlContains(String urlText, int... timeout) {
         int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
 
-        // Instead of using regex pattern which may fail, use a polling approach
-        page.waitForFunction(
-                "expected => window.location.href.includes(expected)",
-                urlText,
-                new Page.WaitForFunctionOptions().setTimeout(timeoutMs)
-        );
+        // Predicate instead of a regex pattern, resolved on navigation events instead of polling
+        Timings.time("wait.urlContains", () -> getPage().waitForURL(url -> url.contains(urlText), new Page.WaitForURLOptions()
+                .setWaitUntil(WaitUntilState.COMMIT)
+                .setTimeout(timeoutMs)));
+    }
+    /**
+     * Wait for an element to be removed from the DOM
+     * @param selector CSS or XPath selector of the element
+     * @param timeout Optional timeout in milliseconds
+     */
+    protected void waitForElementDetached(String selector, int... timeout) {
+        int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
+        Timings.time("wait.elementDetached", () -> getPage().waitForSelector(selector, new Page.WaitForSelectorOptions()
+                .setState(WaitForSelectorState.DETACHED)
+                .setTimeout(timeoutMs)));
     }
     /**
-     * Checks if a dialog box is present and clicks OK if it is.
-     * Returns true if a dialog was handled, false otherwise.
+     * Wait until the selector matches exactly the expected number of elements (auto-retrying assertion)
+     * @param selector CSS or XPath selector of the elements
+     * @param count Expected number of elements
+     * @param timeout Optional timeout in milliseconds
+     */
+    protected void waitForElementCount(String selector, int count, int... timeout) {
+        int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
+        Timings.time("wait.elementCount", () -> PlaywrightAssertions.assertThat(getPage().locator(selector))
+                .hasCount(count, new LocatorAssertions.HasCountOptions().setTimeout(timeoutMs)));
+    }
+    /**
+     * Run an action and wait until a response whose URL contains the given text has been received
+     * @param urlText Text to look for in the response URL
+     * @param action Action that triggers the request
+     * @param timeout Optional timeout in milliseconds
+     * @return The matching response
+     */
+    protected Response waitForResponse(String urlText, Runnable action, int... timeout) {
+        int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
+        return Timings.call("wait.response", () -> getPage().waitForResponse(response -> response.url().contains(urlText),
+                new Page.WaitForResponseOptions().setTimeout(timeoutMs), action));
+    }
+    /**
+     * Run an action and wait until a request whose URL contains the given text has finished,
+     * including the download of the response body
+     * @param urlText Text to look for in the request URL
+     * @param action Action that triggers the request
+     * @param timeout Optional timeout in milliseconds
+     * @return The finished request
+     */
+    protected Request waitForRequestFinished(String urlText, Runnable action, int... timeout) {
+        int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
+        return Timings.call("wait.requestFinished", () -> getPage().waitForRequestFinished(new Page.WaitForRequestFinishedOptions()
+                .setPredicate(request -> request.url().contains(urlText))
+                .setTimeout(timeoutMs), action));
+    }
+    /**
+     * Answer requests matching a URL glob with a canned response instead of the network.
+     * Routes are removed when the page is released at the end of the test.
+     * @param urlGlob Glob of the URLs to mock (Playwright glob syntax)
+     * @param status HTTP status code of the response
+     * @param contentType Content-Type header of the response
+     * @param body Response body
+     */
+    protected void mockRoute(String urlGlob, int status, String contentType, String body) {
+        getPage().route(urlGlob, route -> route.fulfill(new Route.FulfillOptions()
+                .setStatus(status)
+                .setContentType(contentType)
+                .setBody(body)));
+    }
+    /**
+     * Run an action and wait until the page has had no request in flight for a short quiet window
+     * (wait.network.quietMs, 300 ms by default). Only requests made by this page are considered.
+     * @param action Action whose network activity should settle
+     * @param timeout Optional timeout in milliseconds
+     */
+    protected void waitForNetworkIdle(Runnable action, int... timeout) {
+        int timeoutMs = timeout.length > 0 ? timeout[0] : DEFAULT_TIMEOUT;
+        Timings.time("wait.networkIdle", () -> {
+            action.run();
+            NetworkTracker.forPage(getPage()).awaitIdle(NETWORK_QUIET_MS, timeoutMs);
+        });
+    }
+    /**
+     * Checks if a dialog box was raised by the last action and clicks OK if it was.
+     * Dialogs are answered by the page's DialogManager as soon as they appear; this call
+     * only waits until the page settles (load finished), not for the full timeout.
      *
-     * @param timeoutMs Maximum time to wait for dialog in milliseconds
+     * @param timeoutMs Maximum time to wait for the page to settle in milliseconds
      * @return true if dialog was detected and handled, false otherwise
      */
     public boolean checkAndHandleDialog(int timeoutMs) {
         logInfo("Checking for dialog box presence");
-        final boolean[] dialogDetected = {false};
-
-        // Set up dialog handler
-        page.onDialog(dialog -> {
-            String message = dialog.message();
-            logInfo("Dialog detected with message: " + message);
-            dialogDetected[0] = true;
-
-            try {
-                dialog.accept();
-                logInfo("Clicked OK on dialog box");
-            } catch (Exception e) {
-                logInfo("Failed to accept dialog: " + e.getMessage());
-            }
-        });
-
-        // Wait a bit to see if dialog appears
-        try {
-            // Use a polling approach to check if dialog was detected
-            long endTime = System.currentTimeMillis() + timeoutMs;
-            while (System.currentTimeMillis() < endTime && !dialogDetected[0]) {
-                Thread.sleep(100);
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        List<String> dialogs = Timings.call("dialog.check", () -> getDialogs().awaitSettled(timeoutMs));
+        for (String message : dialogs) {
+            logInfo("Dialog detected and handled: " + message);
         }
-
-        return dialogDetected[0];
+        return !dialogs.isEmpty();
+    }
+    /**
+     * Dialog manager of the current page, used to declare dialog policies ahead of an action
+     * @return DialogManager bound to the current page
+     */
+    protected DialogManager getDialogs() {
+        return DialogManager.forPage(getPage());
     }
     /**
      * Adds a timestamp to todo text using JavaScript
@@ -246,7 +587,7 @@ public class Commons {
      */
     public String addTimestampToText(String todoText) {
         // Use JavaScript to generate a timestamp and append it to the text
-        String timestampedText = (String) page.evaluate("(text) => {" +
+        String timestampedText = (String) getPage().evaluate("(text) => {" +
                 "const now = new Date();" +
                 "const timestamp = now.toLocaleString();" +
                 "return `${text} - ${timestamp}`;" +
@@ -0,0 +1,583 @@
+package test.utility;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.testng.ITestContext;
+import org.testng.xml.XmlTest;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Lazy data provider rows read from CSV, XLSX or JSON files.
+ * Rows are read one at a time while TestNG consumes the iterator, so memory stays flat
+ * regardless of the size of the dataset: CSV through a buffered reader, XLSX through POI's
+ * SAX event reader, JSON through a streaming reader over an array of objects.
+ * The first CSV/XLSX row is the header; JSON objects are matched by property name. An optional
+ * "tags" column holds comma or semicolon separated tags used for filtering. Empty cells are
+ * passed as null.
+ *
+ * Settings:
+ *   data.dir           folder holding the data files (default src/test/testdata/datasets)
+ *   data.shard.count   number of shards the rows are split into (default 1)
+ *   data.shard.index   shard run by this JVM, 0 based (default 0); rows are dealt round-robin
+ *   data.range         only rows first-last, 1 based and inclusive (e.g. 1-5000)
+ *   data.tags          tags to run, e.g. smoke,regression; !slow excludes a tag
+ * The same names can be given as <parameter> of a <test> in the suite XML, which wins over the
+ * settings; ShardedSuiteRunner uses this to split the rows of one class across shards.
+ */
+public final class DataRows {
+
+    private static final Path DATA_DIR = Paths.get(FrameworkConfig.get("data.dir",
+            System.getProperty("user.dir") + "/src/test/testdata/datasets"));
+
+    private static final String TAGS_COLUMN = "tags";
+    private static final int XLSX_QUEUE_SIZE = 256;
+
+    private DataRows() {
+    }
+
+    /**
+     * Stream the rows of a data file, filtered by the shard, range and tag settings
+     * @param fileName File name in data.dir, or an absolute path; the extension selects the format
+     * @param columns Columns passed to the test method, in parameter order
+     * @return Iterator to return from a @DataProvider; it closes the file when exhausted
+     */
+    public static Iterator<Object[]> stream(String fileName, String... columns) {
+        return stream(fileName, new Filter(
+                FrameworkConfig.getInt("data.shard.index", 0),
+                FrameworkConfig.getInt("data.shard.count", 1),
+                FrameworkConfig.get("data.range", null),
+                FrameworkConfig.get("data.tags", null)), columns);
+    }
+
+    /**
+     * Stream the rows of a data file, filtered by the &lt;test&gt; parameters of the suite XML
+     * and otherwise by the settings
+     * @param context Test context passed to the @DataProvider method
+     * @param fileName File name in data.dir, or an absolute path; the extension selects the format
+     * @param columns Columns passed to the test method, in parameter order
+     * @return Iterator to return from a @DataProvider
+     */
+    public static Iterator<Object[]> stream(ITestContext context, String fileName, String... columns) {
+        XmlTest test = context == null ? null : context.getCurrentXmlTest();
+        return stream(fileName, new Filter(
+                Integer.parseInt(setting(test, "data.shard.index", "0")),
+                Integer.parseInt(setting(test, "data.shard.count", "1")),
+                setting(test, "data.range", null),
+                setting(test, "data.tags", null)), columns);
+    }
+
+    /**
+     * Stream the rows of a data file with an explicit filter
+     * @param fileName File name in data.dir, or an absolute path
+     * @param filter Shard, range and tag filter
+     * @param columns Columns passed to the test method, in parameter order
+     * @return Iterator to return from a @DataProvider
+     */
+    public static Iterator<Object[]> stream(String fileName, Filter filter, String... columns) {
+        Path file = DATA_DIR.resolve(fileName);
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        RunHistory.touchDataFile(file);
+        try {
+            RowSource source;
+            if (name.endsWith(".csv")) {
+                source = new CsvSource(file);
+            } else if (name.endsWith(".xlsx")) {
+                source = new XlsxSource(file);
+            } else if (name.endsWith(".json")) {
+                source = new JsonSource(file);
+            } else {
+                throw new IllegalArgumentException("Unsupported data file type: " + file);
+            }
+            return new RowIterator(file, source, filter, columns);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open data file " + file, e);
+        }
+    }
+
+    private static String setting(XmlTest test, String name, String defaultValue) {
+        String value = test == null ? null : test.getParameter(name);
+        return value != null ? value : FrameworkConfig.get(name, defaultValue);
+    }
+
+    /**
+     * Which rows of a file are run
+     */
+    public static final class Filter {
+        private final int shardIndex;
+        private final int shardCount;
+        private final long first;
+        private final long last;
+        private final Set<String> include = new HashSet<>();
+        private final Set<String> exclude = new HashSet<>();
+
+        /**
+         * @param shardIndex Shard run, 0 based
+         * @param shardCount Number of shards, 1 for all rows
+         * @param range Rows first-last (1 based, inclusive), null for all rows
+         * @param tags Comma separated tags, !tag to exclude, null for all rows
+         */
+        public Filter(int shardIndex, int shardCount, String range, String tags) {
+            if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+                throw new IllegalArgumentException("Invalid shard " + shardIndex + " of " + shardCount);
+            }
+            this.shardIndex = shardIndex;
+            this.shardCount = shardCount;
+            if (range == null) {
+                first = 1;
+                last = Long.MAX_VALUE;
+            } else {
+                String[] bounds = range.split("-", 2);
+                first = Long.parseLong(bounds[0].trim());
+                last = bounds.length > 1 && !bounds[1].trim().isEmpty() ? Long.parseLong(bounds[1].trim()) : Long.MAX_VALUE;
+            }
+            for (String tag : splitTags(tags)) {
+                if (tag.startsWith("!")) {
+                    exclude.add(tag.substring(1));
+                } else {
+                    include.add(tag);
+                }
+            }
+        }
+
+        boolean accepts(long rowNumber, String tags) {
+            if (rowNumber < first || rowNumber > last || (rowNumber - first) % shardCount != shardIndex) {
+                return false;
+            }
+            if (include.isEmpty() && exclude.isEmpty()) {
+                return true;
+            }
+            List<String> rowTags = splitTags(tags);
+            for (String tag : rowTags) {
+                if (exclude.contains(tag)) {
+                    return false;
+                }
+            }
+            if (include.isEmpty()) {
+                return true;
+            }
+            for (String tag : rowTags) {
+                if (include.contains(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static List<String> splitTags(String tags) {
+            List<String> result = new ArrayList<>();
+            if (tags != null) {
+                for (String tag : tags.split("[,;]")) {
+                    if (!tag.trim().isEmpty()) {
+                        result.add(tag.trim().toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Iterator over the accepted rows, reading one row ahead
+     */
+    private static final class RowIterator implements Iterator<Object[]>, Closeable {
+        private final Path file;
+        private final RowSource source;
+        private final Filter filter;
+        private final String[] columns;
+        private long rowNumber;
+        private Object[] next;
+        private boolean closed;
+
+        RowIterator(Path file, RowSource source, Filter filter, String[] columns) {
+            this.file = file;
+            this.source = source;
+            this.filter = filter;
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !closed) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = next;
+            next = null;
+            return row;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                try {
+                    source.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private Object[] advance() {
+            try {
+                Map<String, String> row;
+                while ((row = source.nextRow()) != null) {
+                    rowNumber++;
+                    if (filter.accepts(rowNumber, row.get(TAGS_COLUMN))) {
+                        Object[] values = new Object[columns.length];
+                        for (int i = 0; i < columns.length; i++) {
+                            if (!row.containsKey(columns[i]) && !source.hasColumn(columns[i])) {
+                                throw new IllegalStateException("Column " + columns[i] + " not found in " + file);
+                            }
+                            String value = row.get(columns[i]);
+                            values[i] = value == null || value.isEmpty() ? null : value;
+                        }
+                        return values;
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Cannot read data file " + file, e);
+            }
+            close();
+            return null;
+        }
+    }
+
+    /**
+     * One file format; rows are column name to cell text
+     */
+    private interface RowSource extends Closeable {
+        Map<String, String> nextRow() throws IOException;
+
+        boolean hasColumn(String column);
+    }
+
+    /**
+     * RFC 4180 CSV: quoted fields may contain separators, doubled quotes and line breaks
+     */
+    private static final class CsvSource implements RowSource {
+        private final BufferedReader reader;
+        private final List<String> header;
+
+        CsvSource(Path file) throws IOException {
+            reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            List<String> names = readRecord();
+            header = names == null ? new ArrayList<>() : names;
+            if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) {
+                header.set(0, header.get(0).substring(1));
+            }
+        }
+
+        @Override
+        public Map<String, String> nextRow() throws IOException {
+            List<String> values;
+            do {
+                values = readRecord();
+            } while (values != null && values.size() == 1 && values.get(0).isEmpty());
+            if (values == null) {
+                return null;
+            }
+            Map<String, String> row = new HashMap<>();
+            for (int i = 0; i < header.size() && i < values.size(); i++) {
+                row.put(header.get(i).trim(), values.get(i));
+            }
+            return row;
+        }
+
+        @Override
+        public boolean hasColumn(String column) {
+            return header.contains(column);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            if (following != -1) {
+                                reader.reset();
+                            }
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            values.add(field.toString());
+            return values;
+        }
+    }
+
+    /**
+     * JSON array of flat objects, read one object at a time
+     */
+    private static final class JsonSource implements RowSource {
+        private final JsonReader reader;
+        private final Set<String> seenColumns = new HashSet<>();
+
+        JsonSource(Path file) throws IOException {
+            reader = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+            reader.beginArray();
+        }
+
+        @Override
+        public Map<String, String> nextRow() throws IOException {
+            if (!reader.hasNext()) {
+                return null;
+            }
+            Map<String, String> row = new HashMap<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                seenColumns.add(name);
+                JsonToken token = reader.peek();
+                if (token == JsonToken.NULL) {
+                    reader.nextNull();
+                    row.put(name, null);
+                } else if (token == JsonToken.BEGIN_ARRAY) {
+                    List<String> items = new ArrayList<>();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        items.add(reader.nextString());
+                    }
+                    reader.endArray();
+                    row.put(name, String.join(",", items));
+                } else if (token == JsonToken.BOOLEAN) {
+                    row.put(name, String.valueOf(reader.nextBoolean()));
+                } else {
+                    row.put(name, reader.nextString());
+                }
+            }
+            reader.endObject();
+            return row;
+        }
+
+        @Override
+        public boolean hasColumn(String column) {
+            return seenColumns.contains(column);
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * First sheet of an XLSX workbook, parsed with POI's SAX event reader.
+     * SAX pushes rows, so a daemon thread parses the sheet into a small bounded queue
+     * that the iterator pulls from.
+     */
+    private static final class XlsxSource implements RowSource {
+        private static final Map<String, String> END = new HashMap<>();
+
+        private final OPCPackage workbook;
+        private final BlockingQueue<Map<String, String>> rows = new ArrayBlockingQueue<>(XLSX_QUEUE_SIZE);
+        private final List<String> header = new ArrayList<>();
+        private final Thread parser;
+        private volatile Exception failure;
+        private boolean finished;
+
+        XlsxSource(Path file) throws IOException {
+            try {
+                workbook = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            } catch (Exception e) {
+                throw new IOException("Cannot open workbook " + file, e);
+            }
+            parser = new Thread(this::parse, "xlsx-reader-" + file.getFileName());
+            parser.setDaemon(true);
+            parser.start();
+        }
+
+        @Override
+        public Map<String, String> nextRow() throws IOException {
+            if (finished) {
+                return null;
+            }
+            Map<String, String> row;
+            try {
+                row = rows.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading workbook", e);
+            }
+            if (row == END) {
+                finished = true;
+                if (failure != null) {
+                    throw new IOException("Cannot parse workbook", failure);
+                }
+                return null;
+            }
+            return row;
+        }
+
+        @Override
+        public boolean hasColumn(String column) {
+            synchronized (header) {
+                return header.contains(column);
+            }
+        }
+
+        @Override
+        public void close() {
+            finished = true;
+            parser.interrupt();
+            workbook.revert();
+        }
+
+        private void parse() {
+            try {
+                XSSFReader reader = new XSSFReader(workbook);
+                XMLReader xml = XMLHelper.newXMLReader();
+                xml.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(),
+                        new ReadOnlySharedStringsTable(workbook), new RowHandler(), new DataFormatter(), false));
+                Iterator<InputStream> sheets = reader.getSheetsData();
+                if (sheets.hasNext()) {
+                    try (InputStream sheet = sheets.next()) {
+                        xml.parse(new InputSource(sheet));
+                    }
+                }
+            } catch (Exception e) {
+                if (!(e instanceof StopParsing)) {
+                    failure = e;
+                }
+            } finally {
+                try {
+                    rows.put(END);
+                } catch (InterruptedException ignored) {
+                    // closed early, nobody is reading
+                }
+            }
+        }
+
+        /**
+         * Thrown from the handler to abort parsing once the iterator is closed
+         */
+        private static final class StopParsing extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            StopParsing() {
+                super(null, null, false, false);
+            }
+        }
+
+        private final class RowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+            private final Map<Integer, String> cells = new LinkedHashMap<>();
+
+            @Override
+            public void startRow(int rowNum) {
+                cells.clear();
+            }
+
+            @Override
+            public void endRow(int rowNum) {
+                if (cells.isEmpty()) {
+                    return;
+                }
+                synchronized (header) {
+                    if (header.isEmpty()) {
+                        int width = cells.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+                        String[] names = new String[width];
+                        Arrays.fill(names, "");
+                        cells.forEach((column, value) -> names[column] = value.trim());
+                        header.addAll(Arrays.asList(names));
+                        return;
+                    }
+                }
+                Map<String, String> row = new HashMap<>();
+                cells.forEach((column, value) -> {
+                    if (column < header.size()) {
+                        row.put(header.get(column), value);
+                    }
+                });
+                try {
+                    rows.put(row);
+                } catch (InterruptedException e) {
+                    throw new StopParsing();
+                }
+            }
+
+            @Override
+            public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+                if (cellReference != null) {
+                    cells.put(columnIndex(cellReference), formattedValue);
+                }
+            }
+        }
+
+        private static int columnIndex(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length() && Character.isLetter(cellReference.charAt(i)); i++) {
+                column = column * 26 + (Character.toUpperCase(cellReference.charAt(i)) - 'A' + 1);
+            }
+            return column - 1;
+        }
+    }
+}
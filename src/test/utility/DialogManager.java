@@ -0,0 +1,175 @@
+package test.utility;
+
+import com.microsoft.playwright.Dialog;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.TimeoutError;
+import com.microsoft.playwright.options.LoadState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Event driven dialog handling for a page.
+ * One listener is registered per page for its whole lifetime; the manager is dropped when the
+ * page closes. Each dialog is answered with the next policy declared through
+ * expect()/expectPrompt(), or with the default policy, and completes a future that callers can
+ * wait on. Playwright delivers events while the test thread is inside a Playwright call, so
+ * waiting is done through page.waitForCondition rather than by sleeping.
+ */
+public final class DialogManager {
+
+    public enum DialogPolicy { ACCEPT, DISMISS }
+
+    private static final Map<Page, DialogManager> MANAGERS = Collections.synchronizedMap(new HashMap<>());
+
+    private final Page page;
+    private final Deque<Expectation> expectations = new ArrayDeque<>();
+    private final List<String> handledMessages = new ArrayList<>();
+    private DialogPolicy defaultPolicy = DialogPolicy.ACCEPT;
+    private CompletableFuture<String> nextDialog = new CompletableFuture<>();
+    private int checkedCount;
+
+    private static final class Expectation {
+        private final DialogPolicy policy;
+        private final String promptText;
+
+        private Expectation(DialogPolicy policy, String promptText) {
+            this.policy = policy;
+            this.promptText = promptText;
+        }
+    }
+
+    private DialogManager(Page page) {
+        this.page = page;
+        page.onDialog(this::handle);
+        // the manager references its page, so a weak map would never let go of it
+        page.onClose(closed -> MANAGERS.remove(closed));
+    }
+
+    /**
+     * Dialog manager of a page, registering its listener on first use
+     * @param page Page to watch
+     * @return Manager bound to the page
+     */
+    public static DialogManager forPage(Page page) {
+        return MANAGERS.computeIfAbsent(page, DialogManager::new);
+    }
+
+    /**
+     * Forget expectations and history, e.g. when a recycled page starts a new test
+     */
+    public void reset() {
+        expectations.clear();
+        handledMessages.clear();
+        defaultPolicy = DialogPolicy.ACCEPT;
+        nextDialog = new CompletableFuture<>();
+        checkedCount = 0;
+    }
+
+    /**
+     * Policy used for dialogs without a declared expectation
+     * @param policy Accept or dismiss
+     */
+    public void setDefaultPolicy(DialogPolicy policy) {
+        this.defaultPolicy = policy;
+    }
+
+    /**
+     * Declare how the next dialog must be answered
+     * @param policy Accept or dismiss
+     */
+    public void expect(DialogPolicy policy) {
+        expectations.addLast(new Expectation(policy, null));
+    }
+
+    /**
+     * Declare that the next dialog is a prompt to be accepted with the given text
+     * @param promptText Text typed into the prompt
+     */
+    public void expectPrompt(String promptText) {
+        expectations.addLast(new Expectation(DialogPolicy.ACCEPT, promptText));
+    }
+
+    /**
+     * Future completed with the message of the next dialog
+     * @return Future for the next dialog
+     */
+    public CompletableFuture<String> nextDialog() {
+        return nextDialog;
+    }
+
+    /**
+     * Wait until a dialog appears
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @return true if a dialog was handled within the timeout
+     */
+    public boolean awaitDialog(int timeoutMs) {
+        CompletableFuture<String> future = nextDialog;
+        if (future.isDone()) {
+            return true;
+        }
+        try {
+            page.waitForCondition(future::isDone, new Page.WaitForConditionOptions().setTimeout(timeoutMs));
+            return true;
+        } catch (TimeoutError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Wait until the current navigation or action settles (page load finished) and report
+     * whether any dialog was handled since the previous check. Returns as soon as the page
+     * is loaded instead of waiting for the full timeout.
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @return Messages of the dialogs handled since the previous check, empty if none
+     */
+    public List<String> awaitSettled(int timeoutMs) {
+        try {
+            page.waitForLoadState(LoadState.LOAD, new Page.WaitForLoadStateOptions().setTimeout(timeoutMs));
+        } catch (TimeoutError e) {
+            // Still loading: report whatever was handled so far
+        }
+        List<String> messages = new ArrayList<>(handledMessages.subList(checkedCount, handledMessages.size()));
+        checkedCount = handledMessages.size();
+        return messages;
+    }
+
+    /**
+     * Run an action and report the dialogs it raised once the page settles
+     * @param action Action that may open a dialog
+     * @param timeoutMs Maximum time to wait for the page to settle
+     * @return Messages of the dialogs raised by the action, empty if none
+     */
+    public List<String> runAndCollect(Runnable action, int timeoutMs) {
+        checkedCount = handledMessages.size();
+        action.run();
+        return awaitSettled(timeoutMs);
+    }
+
+    private void handle(Dialog dialog) {
+        Expectation expectation = expectations.pollFirst();
+        DialogPolicy policy = expectation != null ? expectation.policy : defaultPolicy;
+        try {
+            if (policy == DialogPolicy.DISMISS) {
+                dialog.dismiss();
+            } else if (expectation != null && expectation.promptText != null) {
+                dialog.accept(expectation.promptText);
+            } else {
+                dialog.accept();
+            }
+        } catch (PlaywrightException e) {
+            // Page closed while the dialog was open
+        }
+        handledMessages.add(dialog.type() + ": " + dialog.message());
+        CompletableFuture<String> completed = nextDialog;
+        nextDialog = new CompletableFuture<>();
+        completed.complete(dialog.message());
+    }
+}
@@ -0,0 +1,283 @@
+package test.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-test durations and failures of previous runs, kept in test-output/history/durations.json.
+ * Keys are "class.method" for plain tests and "class.method[parameters]" for data rows, so every
+ * data row has its own history. Durations are smoothed (exponential moving average) so one slow
+ * run does not reshuffle the schedule. Several JVMs can save into the same file; updates are
+ * merged under a file lock.
+ *
+ * Settings:
+ *   history.dir   folder holding the history files (default test-output/history)
+ */
+public final class DurationHistory {
+
+    private static final Path HISTORY_DIR = Paths.get(FrameworkConfig.get("history.dir",
+            System.getProperty("user.dir") + "/test-output/history"));
+    private static final Type ENTRIES = new TypeToken<Map<String, Entry>>() { }.getType();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // weight of the latest run in the moving average
+    private static final double SMOOTHING = 0.5;
+
+    private static DurationHistory shared;
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final Map<String, List<Run>> recorded = new HashMap<>();
+
+    /**
+     * Duration statistics of one test or data row
+     */
+    static final class Entry {
+        double meanMillis;
+        long lastMillis;
+        int runs;
+        // epoch millis of the last failed run, 0 if it never failed
+        long lastFailedAt;
+    }
+
+    /**
+     * One run recorded by this JVM, not yet saved
+     */
+    private static final class Run {
+        final long millis;
+        final long failedAt;
+
+        Run(long millis, long failedAt) {
+            this.millis = millis;
+            this.failedAt = failedAt;
+        }
+    }
+
+    private DurationHistory(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * History of this JVM, loaded on first use and shared by the listeners
+     * @return Shared history
+     */
+    public static synchronized DurationHistory shared() {
+        if (shared == null) {
+            shared = load(HISTORY_DIR.resolve("durations.json"));
+        }
+        return shared;
+    }
+
+    /**
+     * Folder holding the history files
+     * @return history.dir, test-output/history by default
+     */
+    public static Path directory() {
+        return HISTORY_DIR;
+    }
+
+    /**
+     * Load a history file; a missing or unreadable file gives an empty history
+     * @param file History file
+     * @return History
+     */
+    public static DurationHistory load(Path file) {
+        return new DurationHistory(file, read(file));
+    }
+
+    /**
+     * History key of a test result: class.method, plus the parameters for data rows
+     * @param result Test result
+     * @return Key
+     */
+    public static String key(ITestResult result) {
+        return key(result.getMethod().getRealClass().getName(), result.getMethod().getMethodName(), result.getParameters());
+    }
+
+    /**
+     * History key of a test method invocation
+     * @param className Fully qualified test class name
+     * @param methodName Test method name
+     * @param parameters Data row, empty for plain tests
+     * @return Key
+     */
+    public static String key(String className, String methodName, Object[] parameters) {
+        String method = className + "." + methodName;
+        return parameters == null || parameters.length == 0 ? method : method + Arrays.toString(parameters);
+    }
+
+    /**
+     * Record the duration and outcome of one run
+     * @param key Test key
+     * @param millis Duration
+     * @param failed Whether the run failed
+     */
+    public synchronized void record(String key, long millis, boolean failed) {
+        Run run = new Run(millis, failed ? System.currentTimeMillis() : 0);
+        recorded.computeIfAbsent(key, k -> new ArrayList<>()).add(run);
+        merge(entries, key, run);
+    }
+
+    /**
+     * Expected duration of a test or data row
+     * @param key Test key
+     * @param fallback Value used when there is no history
+     * @return Milliseconds
+     */
+    public synchronized double estimateMillis(String key, double fallback) {
+        Entry entry = entries.get(key);
+        return entry == null ? fallback : entry.meanMillis;
+    }
+
+    /**
+     * Expected duration of all tests and data rows of a class, i.e. of running the class alone
+     * @param className Fully qualified test class name
+     * @param fallback Value used when the class has no history
+     * @return Milliseconds
+     */
+    public synchronized double classEstimateMillis(String className, double fallback) {
+        String prefix = className + ".";
+        double total = 0;
+        boolean found = false;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getKey().startsWith(prefix) && !methodPart(entry.getKey(), prefix).contains(".")) {
+                total += entry.getValue().meanMillis;
+                found = true;
+            }
+        }
+        return found ? total : fallback;
+    }
+
+    /**
+     * Expected duration of a test method over all of its data rows
+     * @param className Fully qualified test class name
+     * @param methodName Test method name
+     * @param fallback Value used when the method has no history
+     * @return Milliseconds
+     */
+    public synchronized double methodEstimateMillis(String className, String methodName, double fallback) {
+        String method = className + "." + methodName;
+        double total = 0;
+        boolean found = false;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (isInvocationOf(entry.getKey(), method)) {
+                total += entry.getValue().meanMillis;
+                found = true;
+            }
+        }
+        return found ? total : fallback;
+    }
+
+    /**
+     * When a test or data row last failed
+     * @param key Test key
+     * @return Epoch millis, 0 if it never failed
+     */
+    public synchronized long lastFailedAt(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? 0 : entry.lastFailedAt;
+    }
+
+    /**
+     * When any data row of a test method last failed
+     * @param className Fully qualified test class name
+     * @param methodName Test method name
+     * @return Epoch millis, 0 if it never failed
+     */
+    public synchronized long methodLastFailedAt(String className, String methodName) {
+        String method = className + "." + methodName;
+        long lastFailedAt = 0;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (isInvocationOf(entry.getKey(), method)) {
+                lastFailedAt = Math.max(lastFailedAt, entry.getValue().lastFailedAt);
+            }
+        }
+        return lastFailedAt;
+    }
+
+    /**
+     * Mean duration over all recorded tests, e.g. as the estimate for new tests
+     * @param fallback Value used when the history is empty
+     * @return Milliseconds
+     */
+    public synchronized double meanMillis(double fallback) {
+        return entries.values().stream().mapToDouble(entry -> entry.meanMillis).average().orElse(fallback);
+    }
+
+    /**
+     * Write the durations recorded by this JVM, merged with what other JVMs saved meanwhile
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // released when the channel closes
+            channel.lock();
+            Map<String, Entry> latest = read(file);
+            recorded.forEach((key, runs) -> runs.forEach(run -> merge(latest, key, run)));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(new TreeMap<>(latest), ENTRIES, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entries.clear();
+            entries.putAll(latest);
+            recorded.clear();
+        }
+    }
+
+    private static String methodPart(String key, String prefix) {
+        int parameters = key.indexOf('[', prefix.length());
+        return parameters < 0 ? key.substring(prefix.length()) : key.substring(prefix.length(), parameters);
+    }
+
+    private static boolean isInvocationOf(String key, String method) {
+        return key.equals(method) || (key.startsWith(method) && key.charAt(method.length()) == '[');
+    }
+
+    private static void merge(Map<String, Entry> target, String key, Run run) {
+        Entry entry = target.computeIfAbsent(key, k -> new Entry());
+        entry.meanMillis = entry.runs == 0 ? run.millis : SMOOTHING * run.millis + (1 - SMOOTHING) * entry.meanMillis;
+        entry.lastMillis = run.millis;
+        entry.lastFailedAt = Math.max(entry.lastFailedAt, run.failedAt);
+        entry.runs++;
+    }
+
+    private static Map<String, Entry> read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Entry> entries = GSON.fromJson(reader, ENTRIES);
+            return entries == null ? new HashMap<>() : new HashMap<>(entries);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable duration history " + file + ": " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+}
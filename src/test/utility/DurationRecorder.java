@@ -0,0 +1,79 @@
+package test.utility;
+
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Records the duration and outcome of every test method and data row into the DurationHistory,
+ * which is saved when the suite finishes and used to balance shards and order tests.
+ * The suite's wall time is appended to test-output/history/makespan.csv, so the effect of the
+ * scheduling can be compared between runs; Commons adds it to the report's lifecycle entry.
+ */
+public class DurationRecorder implements ITestListener, ISuiteListener {
+
+    // nanoTime when the running suite started, 0 before
+    private static volatile long suiteStart;
+
+    @Override
+    public void onStart(ISuite suite) {
+        suiteStart = System.nanoTime();
+    }
+
+    /**
+     * Wall time of the running suite so far
+     * @return Milliseconds since the suite started, or -1 without this listener
+     */
+    static long makespanMillis() {
+        long start = suiteStart;
+        return start == 0 ? -1 : (System.nanoTime() - start) / 1_000_000;
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        record(result, false);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        record(result, true);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        try {
+            DurationHistory.shared().save();
+            appendMakespan(suite.getName(), makespanMillis());
+        } catch (IOException e) {
+            System.err.println("Failed to save duration history: " + e.getMessage());
+        }
+    }
+
+    private static void record(ITestResult result, boolean failed) {
+        DurationHistory.shared().record(DurationHistory.key(result), result.getEndMillis() - result.getStartMillis(), failed);
+    }
+
+    private static void appendMakespan(String suiteName, long millis) throws IOException {
+        Path file = DurationHistory.directory().resolve("makespan.csv");
+        boolean created = !Files.exists(file);
+        Files.createDirectories(file.getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (created) {
+                writer.write("finished_at,suite,makespan_ms,scheduler\n");
+            }
+            writer.write(String.format(Locale.ROOT, "%s,\"%s\",%d,%s%n", Instant.now(), suiteName.replace("\"", "\"\""),
+                    millis, DurationScheduler.ENABLED ? "on" : "off"));
+        }
+    }
+}
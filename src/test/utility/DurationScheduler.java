@@ -0,0 +1,110 @@
+package test.utility;
+
+import org.testng.IDataProviderInterceptor;
+import org.testng.IDataProviderMethod;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Orders tests by their DurationHistory so parallel runs finish sooner.
+ * Test methods, and the rows of their data providers, run longest first (longest processing
+ * time first), so a slow tail test starts early instead of running alone at the end. Tests that
+ * failed recently run before everything else to surface failures early. Tests without history
+ * are estimated with the mean duration of all known tests.
+ * Ordering data rows reads them into memory; providers with more rows than
+ * schedule.rows.maxBuffer keep their file order beyond that.
+ *
+ * Settings:
+ *   schedule.enabled             order tests by history (default true)
+ *   schedule.failedWithinHours   failures this recent move a test to the front (default 24)
+ *   schedule.rows.maxBuffer      data rows read ahead for ordering per provider (default 10000)
+ */
+public class DurationScheduler implements IMethodInterceptor, IDataProviderInterceptor {
+
+    static final boolean ENABLED = FrameworkConfig.getBoolean("schedule.enabled", true);
+    private static final long FAILED_WITHIN_MILLIS = TimeUnit.HOURS.toMillis(FrameworkConfig.getInt("schedule.failedWithinHours", 24));
+    private static final int MAX_BUFFERED_ROWS = FrameworkConfig.getInt("schedule.rows.maxBuffer", 10000);
+
+    /**
+     * Sort key of a method or data row
+     */
+    private static final class Scheduled<T> {
+        final T item;
+        final boolean recentlyFailed;
+        final double estimateMillis;
+
+        Scheduled(T item, long lastFailedAt, double estimateMillis) {
+            this.item = item;
+            this.recentlyFailed = lastFailedAt > 0 && System.currentTimeMillis() - lastFailedAt <= FAILED_WITHIN_MILLIS;
+            this.estimateMillis = estimateMillis;
+        }
+    }
+
+    private static final Comparator<Scheduled<?>> ORDER = Comparator
+            .comparing((Scheduled<?> scheduled) -> !scheduled.recentlyFailed)
+            .thenComparing(scheduled -> -scheduled.estimateMillis);
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!ENABLED) {
+            return methods;
+        }
+        DurationHistory history = DurationHistory.shared();
+        double unknown = history.meanMillis(0);
+        List<Scheduled<IMethodInstance>> scheduled = new ArrayList<>();
+        for (IMethodInstance instance : methods) {
+            ITestNGMethod method = instance.getMethod();
+            String className = method.getRealClass().getName();
+            scheduled.add(new Scheduled<>(instance,
+                    history.methodLastFailedAt(className, method.getMethodName()),
+                    history.methodEstimateMillis(className, method.getMethodName(), unknown)));
+        }
+        return sorted(scheduled);
+    }
+
+    @Override
+    public Iterator<Object[]> intercept(Iterator<Object[]> rows, IDataProviderMethod dataProviderMethod,
+                                        ITestNGMethod method, ITestContext context) {
+        if (!ENABLED) {
+            return rows;
+        }
+        DurationHistory history = DurationHistory.shared();
+        String className = method.getRealClass().getName();
+        double unknown = history.meanMillis(0);
+        List<Scheduled<Object[]>> scheduled = new ArrayList<>();
+        while (rows.hasNext() && scheduled.size() < MAX_BUFFERED_ROWS) {
+            Object[] row = rows.next();
+            String key = DurationHistory.key(className, method.getMethodName(), row);
+            scheduled.add(new Scheduled<>(row, history.lastFailedAt(key), history.estimateMillis(key, unknown)));
+        }
+        Iterator<Object[]> ordered = sorted(scheduled).iterator();
+        return new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return ordered.hasNext() || rows.hasNext();
+            }
+
+            @Override
+            public Object[] next() {
+                return ordered.hasNext() ? ordered.next() : rows.next();
+            }
+        };
+    }
+
+    private static <T> List<T> sorted(List<Scheduled<T>> scheduled) {
+        scheduled.sort(ORDER);
+        List<T> items = new ArrayList<>(scheduled.size());
+        for (Scheduled<T> entry : scheduled) {
+            items.add(entry.item);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,147 @@
+package test.utility;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.assertions.LocatorAssertions;
+import com.microsoft.playwright.assertions.PlaywrightAssertions;
+import com.microsoft.playwright.options.WaitForSelectorState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Waits for the readiness of several elements against one shared deadline, recording when each
+ * selector was found ready.
+ * CSS and XPath selectors (starting with "/", "(/" or "xpath=") are checked together in a single
+ * browser round trip: a probe inside the page re-checks them every 20 ms until all are ready or
+ * the deadline passes. A navigation during the wait destroys the probe; it is then started again
+ * on the new document with the time that is left. Selectors the page cannot evaluate itself
+ * (text=, role=, chained with >>, :has-text) are waited for afterwards through locators, one
+ * round trip each. When a selector matches several elements the first one is used.
+ */
+public final class ElementProbe {
+
+    private static final String PROBE_SCRIPT = "({ selectors, visible, timeout }) => new Promise((resolve) => {"
+            + "  const start = performance.now();"
+            + "  const readyAt = {};"
+            + "  const unsupported = [];"
+            + "  const find = (selector) => {"
+            + "    if (selector.startsWith('xpath=')) selector = selector.substring(6);"
+            + "    else if (!selector.startsWith('/') && !selector.startsWith('(/'))"
+            + "      return document.querySelector(selector.startsWith('css=') ? selector.substring(4) : selector);"
+            + "    return document.evaluate(selector, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+            + "  };"
+            + "  const isReady = (el) => {"
+            + "    if (!el) return false;"
+            + "    if (el.disabled || (el.matches && el.matches(':disabled'))) return false;"
+            + "    if (!visible) return true;"
+            + "    const rect = el.getBoundingClientRect();"
+            + "    return rect.width > 0 && rect.height > 0 && getComputedStyle(el).visibility !== 'hidden';"
+            + "  };"
+            + "  let probed = selectors;"
+            + "  const check = () => {"
+            + "    const now = performance.now();"
+            + "    for (const selector of probed) {"
+            + "      if (readyAt[selector] !== undefined) continue;"
+            + "      try { if (isReady(find(selector))) readyAt[selector] = now - start; }"
+            + "      catch (e) { unsupported.push(selector); }"
+            + "    }"
+            + "    probed = probed.filter(s => !unsupported.includes(s));"
+            + "    const pending = probed.filter(s => readyAt[s] === undefined);"
+            + "    if (pending.length === 0 || now - start >= timeout) { resolve({ readyAt, pending, unsupported }); return; }"
+            + "    setTimeout(check, 20);"
+            + "  };"
+            + "  check();"
+            + "})";
+
+    private ElementProbe() {
+    }
+
+    /**
+     * Wait until every selector matches an enabled (and optionally visible) element
+     * @param page Page to probe
+     * @param selectors Playwright selectors
+     * @param requireVisible true to also require a non-empty, visible box
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @return Milliseconds after the start of the wait at which each selector was found ready, in input order
+     * @throws PlaywrightException If some elements are not ready within the timeout; the message names them
+     */
+    public static Map<String, Long> awaitReady(Page page, List<String> selectors, boolean requireVisible, int timeoutMs) {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMs * 1_000_000L;
+        Map<String, Long> timings = new LinkedHashMap<>();
+        List<String> pending = new ArrayList<>();
+        List<String> unsupported = new ArrayList<>();
+        PlaywrightException firstError = null;
+
+        List<String> probed = new ArrayList<>(selectors);
+        while (true) {
+            long probeStart = System.nanoTime();
+            Map<String, Object> args = new HashMap<>();
+            args.put("selectors", probed);
+            args.put("visible", requireVisible);
+            args.put("timeout", Math.max(0, (deadline - probeStart) / 1_000_000));
+            try {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> result = (Map<String, Object>) page.evaluate(PROBE_SCRIPT, args);
+                @SuppressWarnings("unchecked")
+                Map<String, Object> readyAt = (Map<String, Object>) result.get("readyAt");
+                long offsetMs = (probeStart - start) / 1_000_000;
+                readyAt.forEach((selector, value) -> timings.put(selector, offsetMs + Math.round(((Number) value).doubleValue())));
+                @SuppressWarnings("unchecked")
+                List<String> notEvaluated = (List<String>) result.get("unsupported");
+                unsupported.addAll(notEvaluated);
+                @SuppressWarnings("unchecked")
+                List<String> notReady = (List<String>) result.get("pending");
+                pending.addAll(notReady);
+                break;
+            } catch (PlaywrightException e) {
+                // the document went away under the probe; probe the new one for what is left
+                if (System.nanoTime() >= deadline || !isNavigation(e)) {
+                    throw e;
+                }
+                probed.removeIf(timings::containsKey);
+            }
+        }
+
+        for (String selector : unsupported) {
+            Locator locator = page.locator(selector).first();
+            try {
+                locator.waitFor(new Locator.WaitForOptions()
+                        .setState(requireVisible ? WaitForSelectorState.VISIBLE : WaitForSelectorState.ATTACHED)
+                        .setTimeout(remainingMs(deadline)));
+                PlaywrightAssertions.assertThat(locator).isEnabled(new LocatorAssertions.IsEnabledOptions().setTimeout(remainingMs(deadline)));
+                timings.put(selector, (System.nanoTime() - start) / 1_000_000);
+            } catch (PlaywrightException | AssertionError e) {
+                pending.add(selector);
+                if (firstError == null) {
+                    firstError = e instanceof PlaywrightException ? (PlaywrightException) e : new PlaywrightException(e.getMessage(), e);
+                }
+            }
+        }
+
+        Map<String, Long> ordered = new LinkedHashMap<>();
+        for (String selector : selectors) {
+            ordered.put(selector, timings.getOrDefault(selector, -1L));
+        }
+        if (!pending.isEmpty()) {
+            List<String> notReady = new ArrayList<>(selectors);
+            notReady.retainAll(pending);
+            throw new PlaywrightException("Elements not ready after " + timeoutMs + " ms: " + String.join(", ", notReady), firstError);
+        }
+        return ordered;
+    }
+
+    private static double remainingMs(long deadline) {
+        return Math.max(1, (deadline - System.nanoTime()) / 1_000_000.0);
+    }
+
+    private static boolean isNavigation(PlaywrightException e) {
+        String message = String.valueOf(e.getMessage());
+        return message.contains("Execution context was destroyed") || message.contains("navigation");
+    }
+}
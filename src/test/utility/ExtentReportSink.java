@@ -0,0 +1,54 @@
+package test.utility;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.ExtentTest;
+import com.aventstack.extentreports.Status;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes report events to ExtentReports (TestReport.html). Each flush regenerates the whole file.
+ */
+final class ExtentReportSink implements ReportSink {
+
+    private final ExtentReports extent;
+    private final Map<ReportWriter.TestHandle, ExtentTest> tests = new IdentityHashMap<>();
+
+    ExtentReportSink(ExtentReports extent) {
+        this.extent = extent;
+    }
+
+    @Override
+    public void createTest(ReportWriter.TestHandle handle) {
+        ExtentTest test = extent.createTest(handle.getName(), handle.getDescription());
+        if (handle.getCategories().length > 0) {
+            test.assignCategory(handle.getCategories());
+        }
+        tests.put(handle, test);
+    }
+
+    @Override
+    public void log(ReportWriter.TestHandle handle, Status status, String message, Throwable throwable) {
+        if (throwable != null) {
+            tests.get(handle).log(status, throwable);
+        } else {
+            tests.get(handle).log(status, message);
+        }
+    }
+
+    @Override
+    public void attachScreenshot(ReportWriter.TestHandle handle, String screenshotPath) {
+        tests.get(handle).addScreenCaptureFromPath(screenshotPath);
+    }
+
+    @Override
+    public void finish(ReportWriter.TestHandle handle) {
+        tests.remove(handle);
+    }
+
+    @Override
+    public void flush() {
+        extent.flush();
+    }
+}
@@ -0,0 +1,134 @@
+package test.utility;
+
+import com.google.gson.Gson;
+import com.microsoft.playwright.APIRequestContext;
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.RequestOptions;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test state set up without the UI.
+ * Client-side apps are seeded through localStorage: an init script writes the entries before the
+ * app's own scripts run on the first load of the origin, so hundreds of items cost one script
+ * instead of hundreds of UI interactions. The script is not applied again on reloads of the same
+ * tab, so changes made through the UI persist, and the context is closed on release instead of
+ * being recycled, as init scripts cannot be removed from a context.
+ * Server-backed apps are set up through the page's APIRequestContext, which shares cookies with
+ * the browser context. Cleanup actions registered during a test run after it in reverse order.
+ */
+public final class Fixtures {
+
+    private static final Gson GSON = new Gson();
+
+    private static final String SEED_SCRIPT = "(seed => {"
+            + "  if (location.origin !== seed.origin) return;"
+            + "  const marker = '__fixtures_seeded_' + seed.id;"
+            + "  try {"
+            + "    if (sessionStorage.getItem(marker)) return;"
+            + "    for (const [key, value] of Object.entries(seed.entries)) localStorage.setItem(key, value);"
+            + "    sessionStorage.setItem(marker, '1');"
+            + "  } catch (e) {}"
+            + "})";
+
+    private static final ThreadLocal<Deque<Runnable>> CLEANUP = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private static final AtomicInteger seedIds = new AtomicInteger();
+
+    private Fixtures() {
+    }
+
+    /**
+     * Seed localStorage entries of an origin before the page loads it
+     * @param page Page of the current test, not yet navigated to the origin
+     * @param url Any URL of the app; only its origin is used
+     * @param entries Key to value; non-string values are stored as JSON
+     */
+    public static void seedLocalStorage(Page page, String url, Map<String, ?> entries) {
+        Map<String, String> values = new LinkedHashMap<>();
+        entries.forEach((key, value) -> values.put(key, value instanceof String ? (String) value : GSON.toJson(value)));
+        Map<String, Object> seed = new LinkedHashMap<>();
+        seed.put("id", seedIds.incrementAndGet());
+        seed.put("origin", origin(url));
+        seed.put("entries", values);
+        Timings.time("fixtures.seedLocalStorage", () -> {
+            BrowserPool.discardOnRelease(page);
+            page.addInitScript(SEED_SCRIPT + "(" + GSON.toJson(seed) + ")");
+        });
+    }
+
+    /**
+     * POST a JSON body through the page's APIRequestContext
+     * @param page Page of the current test; the request carries its cookies
+     * @param url Absolute URL
+     * @param body Object serialized to JSON
+     * @return Response
+     * @throws IllegalStateException If the response status is not 2xx
+     */
+    public static APIResponse postJson(Page page, String url, Object body) {
+        return Timings.call("fixtures.api", () -> checked(url, page.request().post(url,
+                RequestOptions.create().setHeader("Content-Type", "application/json").setData(GSON.toJson(body)))));
+    }
+
+    /**
+     * DELETE a resource through the page's APIRequestContext once the current test has finished
+     * @param page Page of the current test
+     * @param url Absolute URL of the resource
+     */
+    public static void deleteAfterTest(Page page, String url) {
+        APIRequestContext request = page.request();
+        onCleanup(() -> checked(url, request.delete(url)));
+    }
+
+    /**
+     * Register an action that runs after the current test, before its page is released
+     * @param action Cleanup action; actions run in reverse order of registration
+     */
+    public static void onCleanup(Runnable action) {
+        CLEANUP.get().push(action);
+    }
+
+    /**
+     * Run the cleanup actions of the current test; failures are reported and do not stop the others
+     */
+    static void cleanup() {
+        Deque<Runnable> actions = CLEANUP.get();
+        if (actions.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Runnable action;
+        while ((action = actions.poll()) != null) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("Fixture cleanup failed: " + e.getMessage());
+            }
+        }
+        Timings.record("fixtures.cleanup", System.nanoTime() - start);
+    }
+
+    private static APIResponse checked(String url, APIResponse response) {
+        if (!response.ok()) {
+            throw new IllegalStateException("Fixture request to " + url + " failed: " + response.status() + " "
+                    + response.statusText());
+        }
+        return response;
+    }
+
+    private static String origin(String url) {
+        try {
+            URL parsed = new URL(url);
+            return parsed.getProtocol() + "://" + parsed.getHost() + (parsed.getPort() < 0 ? "" : ":" + parsed.getPort());
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("Not a URL: " + url, e);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package test.utility;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Tracing;
+import org.testng.IRetryAnalyzer;
+import org.testng.ITestResult;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Retries failed tests once with full diagnostics.
+ * Tests run without tracing; when one fails it is retried in a fresh, dedicated BrowserContext
+ * with Playwright tracing (snapshots and screenshots) and optionally video. The trace zip and
+ * video are linked from the retry's report entry, and a test that passes on the retry is
+ * reported as flaky. Installed on every @Test by FlakyRetryTransformer; Commons picks the
+ * diagnostic page for the retry.
+ *
+ * Settings:
+ *   retry.maxAttempts   retries per failed test, 0 disables retrying (default 1)
+ *   retry.trace         record a Playwright trace on retries (default true)
+ *   retry.video         record a video on retries (default false)
+ */
+public class FlakyRetry implements IRetryAnalyzer {
+
+    static final int MAX_ATTEMPTS = FrameworkConfig.getInt("retry.maxAttempts", 1);
+    private static final boolean TRACE = FrameworkConfig.getBoolean("retry.trace", true);
+    private static final boolean VIDEO = FrameworkConfig.getBoolean("retry.video", false);
+
+    // TestNG re-invokes a retried test on the thread that ran the failed attempt
+    private static final ThreadLocal<Boolean> RETRY_PENDING = new ThreadLocal<>();
+    private static final Set<String> FLAKY = new TreeSet<>();
+
+    private int attempts;
+
+    @Override
+    public boolean retry(ITestResult result) {
+        if (attempts >= MAX_ATTEMPTS) {
+            return false;
+        }
+        attempts++;
+        RETRY_PENDING.set(Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Whether the test about to start on this thread is a retry; clears the flag
+     * @return true for a retry attempt
+     */
+    static boolean takeRetryAttempt() {
+        boolean pending = RETRY_PENDING.get() != null;
+        RETRY_PENDING.remove();
+        return pending;
+    }
+
+    /**
+     * Page in a new dedicated context with tracing and/or video recording
+     * @return Page for the retry attempt
+     */
+    static Page acquireDiagnosticPage() {
+        Browser.NewContextOptions options = new Browser.NewContextOptions();
+        if (VIDEO) {
+            options.setRecordVideoDir(FrameworkConfig.outputDir().resolve("videos"));
+        }
+        Page page = BrowserPool.acquirePage(options);
+        startTracing(page);
+        return page;
+    }
+
+    /**
+     * Start tracing the page's context, e.g. after an authenticated session replaced the page
+     * @param page Page of the retry attempt
+     */
+    static void startTracing(Page page) {
+        if (TRACE) {
+            page.context().tracing().start(new Tracing.StartOptions()
+                    .setScreenshots(true)
+                    .setSnapshots(true));
+        }
+    }
+
+    /**
+     * Stop recording and collect the diagnostics of a retry attempt; call before releasing the page
+     * @param page Page of the retry attempt
+     * @param name Base file name, e.g. the report entry name
+     * @return HTML links to the trace zip and video, relative to the report
+     */
+    static List<String> collectDiagnostics(Page page, String name) {
+        List<String> links = new ArrayList<>();
+        String fileName = name.replaceAll("[^a-zA-Z0-9]", "_") + "_" + System.currentTimeMillis();
+        if (TRACE) {
+            Path trace = FrameworkConfig.outputDir().resolve("traces").resolve(fileName + ".zip");
+            page.context().tracing().stop(new Tracing.StopOptions().setPath(trace));
+            links.add("Playwright trace: <a href=\"traces/" + trace.getFileName() + "\">" + trace.getFileName()
+                    + "</a> (open with <code>npx playwright show-trace</code>)");
+        }
+        if (VIDEO && page.video() != null) {
+            // The video file is complete once BrowserPool.release closes the context
+            Path video = page.video().path();
+            links.add("Video: <a href=\"videos/" + video.getFileName() + "\">" + video.getFileName() + "</a>");
+        }
+        return links;
+    }
+
+    /**
+     * Record a test that failed and then passed on a retry
+     * @param result Result of the passing retry
+     */
+    static void markFlaky(ITestResult result) {
+        result.setAttribute("flaky", Boolean.TRUE);
+        synchronized (FLAKY) {
+            FLAKY.add(DurationHistory.key(result));
+        }
+    }
+
+    /**
+     * Tests that passed only on a retry in this run
+     * @return History keys of the flaky tests, sorted
+     */
+    public static List<String> flakyTests() {
+        synchronized (FLAKY) {
+            return new ArrayList<>(FLAKY);
+        }
+    }
+}
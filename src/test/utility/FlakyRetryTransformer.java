@@ -0,0 +1,24 @@
+package test.utility;
+
+import org.testng.IAnnotationTransformer;
+import org.testng.annotations.ITestAnnotation;
+import org.testng.internal.annotations.DisabledRetryAnalyzer;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Installs FlakyRetry on every @Test that has no retry analyzer of its own.
+ * Register it as a listener in the suite XML.
+ */
+public class FlakyRetryTransformer implements IAnnotationTransformer {
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void transform(ITestAnnotation annotation, Class testClass, Constructor testConstructor, Method testMethod) {
+        Class<?> current = annotation.getRetryAnalyzerClass();
+        if (FlakyRetry.MAX_ATTEMPTS > 0 && (current == null || current == DisabledRetryAnalyzer.class)) {
+            annotation.setRetryAnalyzer(FlakyRetry.class);
+        }
+    }
+}
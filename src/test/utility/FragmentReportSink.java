@@ -0,0 +1,281 @@
+package test.utility;
+
+import com.aventstack.extentreports.Status;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental HTML report: one fragment file per test plus a small index page.
+ * When a test finishes its entries are written to report/tests/{id}.js and one summary line is
+ * appended to report/index.js, so the cost per test is constant and only tests that are still
+ * running are held in memory. report/index.html lists the summaries and loads a test's fragment
+ * when it is opened; screenshots are shown as thumbnails linking to the full image.
+ * Fragments are JavaScript (JSONP) rather than JSON so the report also works from file://.
+ */
+final class FragmentReportSink implements ReportSink {
+
+    private static final Gson GSON = new Gson();
+
+    // Lists the summaries from index.js page by page and loads tests/{id}.js when a test is opened
+    private static final String INDEX_PAGE = String.join("\n",
+            "<!DOCTYPE html>",
+            "<html><head><meta charset=\"utf-8\"><title>Test Report</title>",
+            "<style>",
+            "body{font-family:sans-serif;margin:0;display:flex;height:100vh}",
+            "#list{width:40%;overflow:auto;border-right:1px solid #ccc}#detail{flex:1;overflow:auto;padding:12px}",
+            "#bar{position:sticky;top:0;background:#f4f4f4;padding:8px}#counts{font-size:12px;margin-top:4px}",
+            ".row{padding:6px 8px;border-bottom:1px solid #eee;cursor:pointer}.row:hover{background:#eef}",
+            ".pass{color:#2e7d32}.fail{color:#c62828}.skip{color:#ef6c00}.warning{color:#f9a825}.info{color:#1565c0}",
+            "table{border-collapse:collapse}td{border-bottom:1px solid #eee;padding:4px;vertical-align:top}",
+            "pre{white-space:pre-wrap;font-size:12px}img{border:1px solid #ccc;margin:4px}",
+            "</style></head><body>",
+            "<div id=\"list\"><div id=\"bar\"><input id=\"filter\" placeholder=\"Filter by name or tag\">",
+            "<select id=\"status\"><option value=\"\">all</option><option>pass</option><option>fail</option>",
+            "<option>skip</option><option>warning</option></select><div id=\"counts\"></div></div>",
+            "<div id=\"rows\"></div><button id=\"more\">Show more</button></div>",
+            "<div id=\"detail\">Select a test</div>",
+            "<script>",
+            "var entries=[],shown=0,PAGE=200;",
+            "function reportEntry(e){entries.push(e)}",
+            "function esc(t){return String(t).replace(/[&<>\"]/g,function(c){return {'&':'&amp;','<':'&lt;','>':'&gt;','\"':'&quot;'}[c]})}",
+            "function matches(e){var f=document.getElementById('filter').value.toLowerCase(),s=document.getElementById('status').value;",
+            " return (!f||(e.name+' '+(e.tags||[]).join(' ')).toLowerCase().indexOf(f)>=0)&&(!s||e.status===s)}",
+            "function render(reset){var rows=document.getElementById('rows');if(reset){rows.innerHTML='';shown=0}",
+            " var list=entries.filter(matches),end=Math.min(list.length,shown+PAGE),html='';",
+            " for(var i=shown;i<end;i++){var e=list[i];html+='<div class=\"row\" data-id=\"'+e.id+'\"><span class=\"'+e.status+'\">'",
+            "  +e.status.toUpperCase()+'</span> '+esc(e.name)+' '+(e.tags||[]).map(function(t){return '<small>['+esc(t)+']</small>'}).join('')+' <small>'+(e.duration/1000).toFixed(1)+' s</small></div>'}",
+            " rows.insertAdjacentHTML('beforeend',html);shown=end;",
+            " document.getElementById('more').style.display=shown<list.length?'':'none';",
+            " var counts={};entries.forEach(function(e){counts[e.status]=(counts[e.status]||0)+1});",
+            " document.getElementById('counts').textContent=entries.length+' tests '+JSON.stringify(counts)}",
+            "function reportFragment(t){var html='<h2 class=\"'+t.status+'\">'+esc(t.name)+'</h2><p>'+esc(t.description||'')+'</p>';",
+            " html+='<p>'+new Date(t.start).toLocaleString()+', '+(t.duration/1000).toFixed(1)+' s</p><table>';",
+            " t.logs.forEach(function(l){html+='<tr><td class=\"'+l.status+'\">'+l.status+'</td><td>+'+l.time+' ms</td><td>'",
+            "  +(l.exception?'<pre>'+esc(l.exception)+'</pre>':l.html)+'</td></tr>'});",
+            " html+='</table>';t.screenshots.forEach(function(s){html+='<a href=\"'+s.full+'\" target=\"_blank\"><img loading=\"lazy\" src=\"'",
+            "  +s.thumb+'\" onerror=\"this.src=this.parentNode.href;this.onerror=null;this.width=240\"></a>'});",
+            " document.getElementById('detail').innerHTML=html}",
+            "document.getElementById('rows').onclick=function(ev){var row=ev.target.closest('.row');if(!row)return;",
+            " var script=document.createElement('script');script.src='tests/'+row.dataset.id+'.js';",
+            " script.onload=function(){script.remove()};document.body.appendChild(script)};",
+            "document.getElementById('filter').oninput=function(){render(true)};",
+            "document.getElementById('status').onchange=function(){render(true)};",
+            "document.getElementById('more').onclick=function(){render(false)};",
+            "</script>",
+            "<script src=\"index.js\" onload=\"render(true)\" onerror=\"render(true)\"></script>",
+            "</body></html>",
+            "");
+
+    private final Path reportDir;
+    private final Path testsDir;
+    private final Writer index;
+    private final Map<ReportWriter.TestHandle, Entry> running = new IdentityHashMap<>();
+    private long nextId;
+
+    /**
+     * Test in progress
+     */
+    private static final class Entry {
+        final String id;
+        final long start = System.currentTimeMillis();
+        final String name;
+        final String description;
+        final String[] categories;
+        Status status = Status.PASS;
+        final List<Map<String, Object>> logs = new ArrayList<>();
+        final List<Map<String, String>> screenshots = new ArrayList<>();
+
+        Entry(String id, ReportWriter.TestHandle handle) {
+            this.id = id;
+            this.name = handle.getName();
+            this.description = handle.getDescription();
+            this.categories = handle.getCategories();
+        }
+    }
+
+    FragmentReportSink(Path outputDir) {
+        reportDir = outputDir.resolve("report");
+        testsDir = reportDir.resolve("tests");
+        try {
+            Files.createDirectories(testsDir);
+            // fragments of an earlier run would be listed under reused ids
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(testsDir, "*.js")) {
+                for (Path file : stale) {
+                    Files.delete(file);
+                }
+            }
+            Files.write(reportDir.resolve("index.html"), INDEX_PAGE.getBytes(StandardCharsets.UTF_8));
+            index = Files.newBufferedWriter(reportDir.resolve("index.js"), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create fragment report in " + reportDir, e);
+        }
+    }
+
+    @Override
+    public void createTest(ReportWriter.TestHandle handle) {
+        running.put(handle, new Entry(String.format("%06d", ++nextId), handle));
+    }
+
+    @Override
+    public void log(ReportWriter.TestHandle handle, Status status, String message, Throwable throwable) {
+        Entry entry = running.get(handle);
+        if (entry == null) {
+            return;
+        }
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("status", status.toLower());
+        line.put("time", System.currentTimeMillis() - entry.start);
+        if (throwable != null) {
+            StringWriter trace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(trace));
+            line.put("exception", trace.toString());
+        } else {
+            line.put("html", message);
+        }
+        entry.logs.add(line);
+        entry.status = Status.max(entry.status, status);
+    }
+
+    @Override
+    public void attachScreenshot(ReportWriter.TestHandle handle, String screenshotPath) {
+        Entry entry = running.get(handle);
+        if (entry == null) {
+            return;
+        }
+        Map<String, String> screenshot = new LinkedHashMap<>();
+        screenshot.put("full", "../" + screenshotPath);
+        screenshot.put("thumb", "../" + ScreenshotService.thumbnailPath(screenshotPath));
+        entry.screenshots.add(screenshot);
+    }
+
+    @Override
+    public void finish(ReportWriter.TestHandle handle) {
+        Entry entry = running.remove(handle);
+        if (entry == null) {
+            return;
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("id", entry.id);
+        summary.put("name", entry.name);
+        summary.put("status", entry.status.toLower());
+        summary.put("tags", entry.categories);
+        summary.put("start", entry.start);
+        summary.put("duration", System.currentTimeMillis() - entry.start);
+
+        Map<String, Object> fragment = new LinkedHashMap<>(summary);
+        fragment.put("description", entry.description);
+        fragment.put("logs", entry.logs);
+        fragment.put("screenshots", entry.screenshots);
+        try {
+            try (Writer writer = Files.newBufferedWriter(testsDir.resolve(entry.id + ".js"), StandardCharsets.UTF_8)) {
+                writer.write("reportFragment(");
+                GSON.toJson(fragment, writer);
+                writer.write(");\n");
+            }
+            index.write("reportEntry(");
+            GSON.toJson(summary, index);
+            index.write(");\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write report fragment for " + entry.name, e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            index.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            index.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Combine the fragment reports of several output folders (e.g. shards) into one. Test ids are
+     * numbered per folder, so they are prefixed with the folder name; screenshot links are relative
+     * to the output folder and stay valid once the screenshots are copied along.
+     * @param sourceDirs Output folders holding report/index.js
+     * @param outputDir Output folder of the merged report
+     * @return Number of merged tests
+     * @throws IOException If a fragment cannot be read or written
+     */
+    static int merge(List<Path> sourceDirs, Path outputDir) throws IOException {
+        Path reportDir = outputDir.resolve("report");
+        Path testsDir = reportDir.resolve("tests");
+        Files.createDirectories(testsDir);
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(testsDir, "*.js")) {
+            for (Path file : stale) {
+                Files.delete(file);
+            }
+        }
+        int merged = 0;
+        try (Writer index = Files.newBufferedWriter(reportDir.resolve("index.js"), StandardCharsets.UTF_8)) {
+            for (Path sourceDir : sourceDirs) {
+                Path sourceIndex = sourceDir.resolve("report").resolve("index.js");
+                if (!Files.isRegularFile(sourceIndex)) {
+                    continue;
+                }
+                String prefix = sourceDir.getFileName() + "_";
+                for (String line : Files.readAllLines(sourceIndex, StandardCharsets.UTF_8)) {
+                    JsonObject summary = unwrap(line, "reportEntry(");
+                    if (summary == null) {
+                        continue;
+                    }
+                    String id = summary.get("id").getAsString();
+                    summary.addProperty("id", prefix + id);
+                    Path sourceFragment = sourceDir.resolve("report").resolve("tests").resolve(id + ".js");
+                    if (Files.isRegularFile(sourceFragment)) {
+                        JsonObject fragment = unwrap(new String(Files.readAllBytes(sourceFragment), StandardCharsets.UTF_8), "reportFragment(");
+                        if (fragment != null) {
+                            fragment.addProperty("id", prefix + id);
+                            try (Writer writer = Files.newBufferedWriter(testsDir.resolve(prefix + id + ".js"), StandardCharsets.UTF_8)) {
+                                writer.write("reportFragment(");
+                                GSON.toJson(fragment, writer);
+                                writer.write(");\n");
+                            }
+                        }
+                    }
+                    index.write("reportEntry(");
+                    GSON.toJson(summary, index);
+                    index.write(");\n");
+                    merged++;
+                }
+            }
+        }
+        Files.write(reportDir.resolve("index.html"), INDEX_PAGE.getBytes(StandardCharsets.UTF_8));
+        return merged;
+    }
+
+    // the JSON argument of a reportEntry(...) or reportFragment(...) call, parsed as is so numbers keep their form
+    private static JsonObject unwrap(String script, String call) {
+        String text = script.trim();
+        if (!text.startsWith(call) || !text.endsWith(");")) {
+            return null;
+        }
+        return JsonParser.parseString(text.substring(call.length(), text.length() - 2)).getAsJsonObject();
+    }
+}
@@ -0,0 +1,81 @@
+package test.utility;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Central access point for framework settings.
+ * Values are read from JVM system properties first (e.g. -Dbrowser.headless=true)
+ * and then from environment variables (e.g. BROWSER_HEADLESS=true).
+ */
+public final class FrameworkConfig {
+
+    private FrameworkConfig() {
+    }
+
+    /**
+     * Read a setting as text
+     * @param key Property name, dot separated
+     * @param defaultValue Value used when the setting is not defined
+     * @return The configured value or the default
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            value = System.getenv(key.toUpperCase().replace('.', '_').replace('-', '_'));
+        }
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Base URL of an application for the current environment.
+     * An explicit {app}.baseUrl setting wins; with test.env=local the embedded LocalAppServer
+     * serves the application's fixture; otherwise the public URL is used.
+     * @param app Application name, also the fixture folder name (e.g. saucedemo)
+     * @param defaultUrl Public URL of the application
+     * @return Base URL ending with a slash
+     */
+    public static String baseUrl(String app, String defaultUrl) {
+        String explicit = get(app + ".baseUrl", null);
+        if (explicit != null) {
+            return explicit.endsWith("/") ? explicit : explicit + "/";
+        }
+        if ("local".equalsIgnoreCase(get("test.env", ""))) {
+            return LocalAppServer.baseUrl(app);
+        }
+        return defaultUrl;
+    }
+
+    /**
+     * Folder the report, screenshots and timings of this run are written to.
+     * Sharded runs give every shard JVM its own folder through report.dir.
+     * @return Absolute path, test-output under the working directory by default
+     */
+    public static Path outputDir() {
+        return Paths.get(get("report.dir", System.getProperty("user.dir") + "/test-output")).toAbsolutePath();
+    }
+
+    /**
+     * Read a setting as an integer
+     * @param key Property name, dot separated
+     * @param defaultValue Value used when the setting is not defined or not a number
+     * @return The configured value or the default
+     */
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Read a setting as a boolean
+     * @param key Property name, dot separated
+     * @param defaultValue Value used when the setting is not defined
+     * @return The configured value or the default
+     */
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+}
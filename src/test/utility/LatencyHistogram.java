@@ -0,0 +1,92 @@
+package test.utility;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with HDR-style log-linear buckets.
+ * Values are recorded in microseconds; each power-of-two range is split into 32 sub-buckets,
+ * so percentiles are accurate to about 3% while memory stays fixed (about 15 KB) regardless
+ * of how many values are recorded.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+    private static final int BUCKETS = 64 - SUB_BUCKET_BITS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray((BUCKETS + 1) * SUB_BUCKET_HALF);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong minMicros = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Record one duration
+     * @param nanos Duration in nanoseconds
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(indexOf(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        minMicros.accumulateAndGet(micros, Math::min);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Mean of the recorded values
+     * @return Milliseconds
+     */
+    public double getMeanMillis() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : totalMicros.get() / (count * 1000.0);
+    }
+
+    public double getMinMillis() {
+        return totalCount.get() == 0 ? 0 : minMicros.get() / 1000.0;
+    }
+
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Value below which the given percentage of recorded values fall
+     * @param percentile Percentile between 0 and 100
+     * @return Milliseconds (upper bound of the matching bucket, capped at the maximum)
+     */
+    public double getPercentileMillis(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalent(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    private static int indexOf(long micros) {
+        int bucket = Math.max(0, (63 - Long.numberOfLeadingZeros(micros | 1)) - (SUB_BUCKET_BITS - 1));
+        int subBucket = (int) (micros >>> bucket);
+        return bucket * SUB_BUCKET_HALF + subBucket;
+    }
+
+    private static long highestEquivalent(int index) {
+        int bucket = index < SUB_BUCKET_COUNT ? 0 : index / SUB_BUCKET_HALF - 1;
+        long subBucket = index - (long) bucket * SUB_BUCKET_HALF;
+        return (subBucket << bucket) + (1L << bucket) - 1;
+    }
+}
@@ -0,0 +1,376 @@
+package test.utility;
+
+import com.google.gson.GsonBuilder;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.options.WaitForSelectorState;
+import test.pageobjects.saucedemo.LoginPageObjects;
+import test.pageobjects.todo.TodoItemPageObjects;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load/soak mode: replays the scenario flows through the page objects with many concurrent
+ * virtual users and measures the application's latency.
+ * Every virtual user is its own BrowserContext. Playwright objects are bound to the thread that
+ * created them, so users are not threads: each worker thread owns one browser and runs its users
+ * from a queue ordered by their next start time, and a user that is thinking costs nothing but
+ * its idle context. One iteration of a flow runs at a time per worker, so with many users per
+ * worker the "scheduler lag" metric shows how late iterations start; add workers when it grows.
+ * Navigation timing and Web Vitals of every loaded page and the duration of each flow are
+ * recorded into latency histograms and written with the throughput per second to test-output/load.
+ *
+ * Runs against the local stand-ins unless test.env or an {app}.baseUrl is set:
+ *   java -cp "target/classes:$(cat cp.txt)" test.utility.LoadRunner --users 50 --rampUp 10 --duration 120
+ *
+ * Options (or the settings in brackets):
+ *   --users N          virtual users (load.users, default 10)
+ *   --rampUp S         seconds over which users start (load.rampUpSeconds, default 10)
+ *   --duration S       seconds of load after the ramp-up starts (load.durationSeconds, default 60)
+ *   --thinkTime MS     mean pause between iterations, +/- 50% (load.thinkTimeMs, default 1000)
+ *   --scenario NAME    login | todo | mixed (load.scenario, default mixed)
+ *   --workers N        browser threads (load.workers, default number of processors)
+ */
+public final class LoadRunner {
+
+    private static final String USERNAME = FrameworkConfig.get("load.username", "standard_user");
+    private static final String PASSWORD = FrameworkConfig.get("load.password", "secret_sauce");
+
+    private final int users;
+    private final long rampUpNanos;
+    private final long durationNanos;
+    private final long thinkTimeNanos;
+    private final String scenario;
+    private final int workers;
+
+    private final Map<String, LatencyHistogram> metrics = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> completedPerSecond = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> errorsPerSecond = new ConcurrentHashMap<>();
+    private final AtomicLong iterations = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Map<String, AtomicInteger> errorTypes = new ConcurrentHashMap<>();
+    private long startNanos;
+
+    /**
+     * State of one virtual user, only touched by its worker thread
+     */
+    private static final class VirtualUser {
+        final int id;
+        final String flow;
+        long nextRunAt;
+        int iteration;
+        BrowserContext context;
+        Page page;
+
+        VirtualUser(int id, String flow, long nextRunAt) {
+            this.id = id;
+            this.flow = flow;
+            this.nextRunAt = nextRunAt;
+        }
+    }
+
+    LoadRunner(int users, int rampUpSeconds, int durationSeconds, int thinkTimeMs, String scenario, int workers) {
+        this.users = users;
+        this.rampUpNanos = TimeUnit.SECONDS.toNanos(rampUpSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.thinkTimeNanos = TimeUnit.MILLISECONDS.toNanos(thinkTimeMs);
+        this.scenario = scenario;
+        this.workers = Math.max(1, Math.min(workers, users));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = FrameworkConfig.getInt("load.users", 10);
+        int rampUp = FrameworkConfig.getInt("load.rampUpSeconds", 10);
+        int duration = FrameworkConfig.getInt("load.durationSeconds", 60);
+        int thinkTime = FrameworkConfig.getInt("load.thinkTimeMs", 1000);
+        String scenario = FrameworkConfig.get("load.scenario", "mixed").toLowerCase(Locale.ROOT);
+        int workers = FrameworkConfig.getInt("load.workers", Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--users":
+                    users = Integer.parseInt(args[++i]);
+                    break;
+                case "--rampUp":
+                    rampUp = Integer.parseInt(args[++i]);
+                    break;
+                case "--duration":
+                    duration = Integer.parseInt(args[++i]);
+                    break;
+                case "--thinkTime":
+                    thinkTime = Integer.parseInt(args[++i]);
+                    break;
+                case "--scenario":
+                    scenario = args[++i].toLowerCase(Locale.ROOT);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (!scenario.equals("login") && !scenario.equals("todo") && !scenario.equals("mixed")) {
+            throw new IllegalArgumentException("Unknown scenario " + scenario + ", expected login, todo or mixed");
+        }
+        // the page objects read their base URLs once, so pick the environment before they load
+        if (FrameworkConfig.get("test.env", null) == null) {
+            System.setProperty("test.env", "local");
+        }
+
+        LoadRunner runner = new LoadRunner(users, rampUp, duration, thinkTime, scenario, workers);
+        try {
+            runner.run();
+            runner.report(FrameworkConfig.outputDir().resolve("load"));
+        } finally {
+            LocalAppServer.stop();
+        }
+    }
+
+    /**
+     * Start the workers and wait until the duration has passed and every worker closed its browser
+     * @throws InterruptedException If interrupted while waiting
+     */
+    void run() throws InterruptedException {
+        startNanos = System.nanoTime();
+        List<List<VirtualUser>> assigned = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            assigned.add(new ArrayList<>());
+        }
+        for (int id = 0; id < users; id++) {
+            String flow = scenario.equals("mixed") ? (id % 2 == 0 ? "login" : "todo") : scenario;
+            long startAt = startNanos + (users == 1 ? 0 : rampUpNanos * id / (users - 1));
+            assigned.get(id % workers).add(new VirtualUser(id, flow, startAt));
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            List<VirtualUser> workerUsers = assigned.get(w);
+            Thread thread = new Thread(() -> runWorker(workerUsers), "load-worker-" + (w + 1));
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private void runWorker(List<VirtualUser> workerUsers) {
+        long endAt = startNanos + durationNanos;
+        PriorityQueue<VirtualUser> queue = new PriorityQueue<>((a, b) -> Long.compare(a.nextRunAt, b.nextRunAt));
+        queue.addAll(workerUsers);
+        try (Playwright playwright = Playwright.create()) {
+            BrowserProfile profile = BrowserProfile.current();
+            Browser browser = playwright.chromium().launch(profile.launchOptions("chromium")
+                    .setHeadless(FrameworkConfig.getBoolean("browser.headless", true)));
+            while (!queue.isEmpty()) {
+                VirtualUser user = queue.peek();
+                long now = System.nanoTime();
+                if (now >= endAt) {
+                    break;
+                }
+                if (user.nextRunAt > now) {
+                    if (!sleepNanos(Math.min(user.nextRunAt, endAt) - now)) {
+                        countError("worker: interrupted, " + queue.size() + " users stopped early");
+                        break;
+                    }
+                    continue;
+                }
+                queue.poll();
+                record("scheduler.lag", now - user.nextRunAt);
+                runIteration(browser, profile, user);
+                long jitter = thinkTimeNanos == 0 ? 0 : ThreadLocalRandom.current().nextLong(thinkTimeNanos) - thinkTimeNanos / 2;
+                user.nextRunAt = System.nanoTime() + thinkTimeNanos + jitter;
+                queue.add(user);
+            }
+            browser.close();
+        } catch (RuntimeException e) {
+            // e.g. the browser could not be launched; the worker's users are lost, so make it visible
+            countError("worker: " + e.getClass().getSimpleName());
+            System.err.println(Thread.currentThread().getName() + " stopped: " + e);
+        }
+    }
+
+    private void runIteration(Browser browser, BrowserProfile profile, VirtualUser user) {
+        long start = System.nanoTime();
+        try {
+            if (user.page == null) {
+                user.context = browser.newContext(profile.applyTo(new Browser.NewContextOptions()));
+                profile.install(user.context);
+                user.page = user.context.newPage();
+                record("context.create", System.nanoTime() - start);
+            }
+            user.iteration++;
+            if (user.flow.equals("login")) {
+                loginFlow(user.page);
+            } else {
+                todoFlow(user.page, "Load user " + user.id + " #" + user.iteration);
+            }
+            record("flow." + user.flow, System.nanoTime() - start);
+            iterations.incrementAndGet();
+            perSecond(completedPerSecond).incrementAndGet();
+        } catch (RuntimeException | AssertionError e) {
+            // any failure of one iteration, including page-object bugs and budget assertions, is an error of that user only
+            countError(user.flow + ": " + e.getClass().getSimpleName());
+            // start the next iteration from a fresh context
+            if (user.context != null) {
+                try {
+                    user.context.close();
+                } catch (PlaywrightException ignored) {
+                    // browser already gone
+                }
+            }
+            user.context = null;
+            user.page = null;
+        }
+    }
+
+    private void countError(String type) {
+        errors.incrementAndGet();
+        perSecond(errorsPerSecond).incrementAndGet();
+        errorTypes.computeIfAbsent(type, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void loginFlow(Page page) {
+        LoginPageObjects loginPage = new LoginPageObjects(page);
+        page.context().clearCookies();
+        loginPage.navigateToLoginPage();
+        recordPage("login", page);
+        loginPage.login(USERNAME, PASSWORD);
+        page.waitForURL(url -> url.contains("inventory.html"));
+        recordPage("inventory", page);
+    }
+
+    private void todoFlow(Page page, String todoText) {
+        TodoItemPageObjects todoPage = new TodoItemPageObjects(page);
+        todoPage.navigateToTodoApp();
+        recordPage("todo", page);
+        String item = todoPage.getTodoItemByTextSelector(todoText);
+        todoPage.enterTodoText(todoText);
+        todoPage.clickAddButton();
+        page.waitForSelector(item);
+        todoPage.deleteTodo(todoText);
+        page.waitForSelector(item, new Page.WaitForSelectorOptions().setState(WaitForSelectorState.DETACHED));
+    }
+
+    private void recordPage(String name, Page page) {
+        PerfScripts.navigationTiming(page).forEach((metric, value) -> {
+            if (!metric.equals("transferSize")) {
+                recordMillis(name + ".nav." + metric, value);
+            }
+        });
+        PerfScripts.webVitals(page).forEach((metric, value) -> {
+            // CLS is a score; it is stored as if it were milliseconds so the histogram keeps its precision
+            recordMillis(name + ".vitals." + metric, value);
+        });
+    }
+
+    private void recordMillis(String name, double millis) {
+        record(name, (long) (millis * 1_000_000));
+    }
+
+    private void record(String name, long nanos) {
+        metrics.computeIfAbsent(name, key -> new LatencyHistogram()).recordNanos(nanos);
+    }
+
+    private AtomicInteger perSecond(Map<Long, AtomicInteger> series) {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos);
+        return series.computeIfAbsent(second, key -> new AtomicInteger());
+    }
+
+    /**
+     * Print the percentiles and write summary.json, metrics.csv and throughput.csv
+     * @param directory Output folder
+     * @throws IOException If a file cannot be written
+     */
+    void report(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        double seconds = Math.min(System.nanoTime() - startNanos, durationNanos) / 1e9;
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(metrics).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("name", entry.getKey());
+            row.put("count", histogram.getCount());
+            row.put("meanMs", round(histogram.getMeanMillis()));
+            row.put("p50Ms", round(histogram.getPercentileMillis(50)));
+            row.put("p95Ms", round(histogram.getPercentileMillis(95)));
+            row.put("p99Ms", round(histogram.getPercentileMillis(99)));
+            row.put("maxMs", round(histogram.getMaxMillis()));
+            rows.add(row);
+        }
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("scenario", scenario);
+        summary.put("users", users);
+        summary.put("workers", workers);
+        summary.put("rampUpSeconds", TimeUnit.NANOSECONDS.toSeconds(rampUpNanos));
+        summary.put("durationSeconds", round(seconds));
+        summary.put("thinkTimeMs", TimeUnit.NANOSECONDS.toMillis(thinkTimeNanos));
+        summary.put("iterations", iterations.get());
+        summary.put("errors", errors.get());
+        summary.put("errorTypes", new TreeMap<>(errorTypes));
+        summary.put("iterationsPerSecond", round(iterations.get() / seconds));
+        summary.put("metrics", rows);
+        try (Writer json = Files.newBufferedWriter(directory.resolve("summary.json"), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(summary, json);
+        }
+
+        try (Writer csv = Files.newBufferedWriter(directory.resolve("metrics.csv"), StandardCharsets.UTF_8)) {
+            csv.write("name,count,mean_ms,p50_ms,p95_ms,p99_ms,max_ms\n");
+            for (Map<String, Object> row : rows) {
+                csv.write(String.join(",", row.values().stream().map(String::valueOf).toArray(String[]::new)) + "\n");
+            }
+        }
+        try (Writer csv = Files.newBufferedWriter(directory.resolve("throughput.csv"), StandardCharsets.UTF_8)) {
+            csv.write("second,iterations,errors\n");
+            long last = TimeUnit.NANOSECONDS.toSeconds(durationNanos);
+            for (long second = 0; second < last; second++) {
+                AtomicInteger completed = completedPerSecond.get(second);
+                AtomicInteger failed = errorsPerSecond.get(second);
+                csv.write(second + "," + (completed == null ? 0 : completed.get()) + "," + (failed == null ? 0 : failed.get()) + "\n");
+            }
+        }
+
+        System.out.println(String.format(Locale.ROOT, "%s: %d users on %d workers, %d iterations in %.0f s (%.2f/s), %d errors %s",
+                scenario, users, workers, iterations.get(), seconds, iterations.get() / seconds, errors.get(), errorTypes));
+        System.out.println(String.format("%-36s %8s %9s %9s %9s %9s %9s", "metric", "count", "mean", "p50", "p95", "p99", "max"));
+        for (Map<String, Object> row : rows) {
+            System.out.println(String.format(Locale.ROOT, "%-36s %8d %9.1f %9.1f %9.1f %9.1f %9.1f", row.get("name"), row.get("count"),
+                    row.get("meanMs"), row.get("p50Ms"), row.get("p95Ms"), row.get("p99Ms"), row.get("maxMs")));
+        }
+        System.out.println("Report written to " + directory);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static boolean sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(Math.max(0, nanos));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
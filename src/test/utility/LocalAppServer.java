@@ -0,0 +1,118 @@
+package test.utility;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP server serving local stand-ins of the applications under test.
+ * Each application is a folder under src/test/fixtures (e.g. fixtures/saucedemo) and is served
+ * from http://127.0.0.1:{port}/{app}/, so suites can run without outbound network access.
+ *
+ * Settings:
+ *   local.server.port       port to bind, 0 for any free port (default 0)
+ *   local.server.fixtures   folder holding the application fixtures (default src/test/fixtures)
+ */
+public final class LocalAppServer {
+
+    private static final Path FIXTURES = Paths.get(FrameworkConfig.get("local.server.fixtures",
+            System.getProperty("user.dir") + "/src/test/fixtures")).toAbsolutePath().normalize();
+
+    private static HttpServer server;
+
+    private LocalAppServer() {
+    }
+
+    /**
+     * Base URL of an application served locally, starting the server on first use
+     * @param app Folder name of the application fixture
+     * @return URL ending with a slash
+     */
+    public static synchronized String baseUrl(String app) {
+        if (server == null) {
+            start();
+        }
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + app + "/";
+    }
+
+    /**
+     * Stop the server if it is running
+     */
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private static void start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", FrameworkConfig.getInt("local.server.port", 0)), 0);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot start local application server", e);
+        }
+        server.createContext("/", LocalAppServer::serve);
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "local-app-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(LocalAppServer::stop, "local-app-server-shutdown"));
+    }
+
+    private static void serve(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/")) {
+                path += "index.html";
+            }
+            Path file = FIXTURES.resolve(path.substring(1)).normalize();
+            if (!file.startsWith(FIXTURES) || !Files.isRegularFile(file)) {
+                send(exchange, 404, "text/plain", "Not found".getBytes());
+                return;
+            }
+            send(exchange, 200, contentType(file), Files.readAllBytes(file));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".html")) {
+            return "text/html; charset=utf-8";
+        } else if (name.endsWith(".js")) {
+            return "application/javascript; charset=utf-8";
+        } else if (name.endsWith(".css")) {
+            return "text/css; charset=utf-8";
+        } else if (name.endsWith(".json")) {
+            return "application/json";
+        } else if (name.endsWith(".png")) {
+            return "image/png";
+        } else if (name.endsWith(".svg")) {
+            return "image/svg+xml";
+        }
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,145 @@
+package test.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.options.HarMode;
+import com.microsoft.playwright.options.HarNotFound;
+import com.microsoft.playwright.options.RouteFromHarUpdateContentPolicy;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HAR based record/replay of network traffic for new browser contexts.
+ * In record mode every context writes the traffic it saw to its own part file next to the HAR
+ * file when it closes (contexts are rotated, discarded and kept per profile, so they cannot share
+ * one file); when the browsers are shut down the parts are merged into the HAR file. In replay
+ * mode requests are answered from the HAR file and never reach the network.
+ *
+ * Settings:
+ *   network.har.mode       off | record | replay (default off)
+ *   network.har.file       HAR file to record to or replay from (default test-output/har/recording.har)
+ *   network.har.url        glob of the URLs to record/replay (default all)
+ *   network.har.notFound   replay behavior for unknown requests: abort | fallback (default abort)
+ */
+public final class NetworkReplay {
+
+    private static final String MODE = FrameworkConfig.get("network.har.mode", "off").toLowerCase(Locale.ROOT);
+    private static final Path HAR_FILE = Paths.get(FrameworkConfig.get("network.har.file",
+            System.getProperty("user.dir") + "/test-output/har/recording.har"));
+    private static final String URL_GLOB = FrameworkConfig.get("network.har.url", null);
+    private static final HarNotFound NOT_FOUND = HarNotFound.valueOf(
+            FrameworkConfig.get("network.har.notFound", "abort").toUpperCase(Locale.ROOT));
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    // part files written by the contexts of this JVM, merged by finish()
+    private static final List<Path> PARTS = new ArrayList<>();
+    private static final AtomicInteger PART_COUNTER = new AtomicInteger();
+
+    private NetworkReplay() {
+    }
+
+    /**
+     * Attach HAR recording or replay to a context, according to network.har.mode
+     * @param context Newly created context
+     */
+    public static void apply(BrowserContext context) {
+        if ("off".equals(MODE)) {
+            return;
+        }
+        BrowserContext.RouteFromHAROptions options = new BrowserContext.RouteFromHAROptions()
+                .setUrl(URL_GLOB);
+        if ("record".equals(MODE)) {
+            try {
+                Files.createDirectories(HAR_FILE.toAbsolutePath().getParent());
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create HAR directory for " + HAR_FILE, e);
+            }
+            options.setUpdate(true).setUpdateMode(HarMode.FULL).setUpdateContent(RouteFromHarUpdateContentPolicy.EMBED);
+            context.routeFromHAR(nextPart(), options);
+            return;
+        } else if ("replay".equals(MODE)) {
+            if (!Files.isRegularFile(HAR_FILE)) {
+                throw new IllegalStateException("HAR file to replay not found: " + HAR_FILE.toAbsolutePath());
+            }
+            options.setNotFound(NOT_FOUND);
+        } else {
+            throw new IllegalStateException("Unknown network.har.mode: " + MODE);
+        }
+        context.routeFromHAR(HAR_FILE, options);
+    }
+
+    /**
+     * Merge the part files recorded by the closed contexts into the HAR file; call after every
+     * context of the run has been closed
+     */
+    public static void finish() {
+        List<Path> parts;
+        synchronized (PARTS) {
+            parts = new ArrayList<>(PARTS);
+            PARTS.clear();
+        }
+        if (parts.isEmpty()) {
+            return;
+        }
+        JsonObject merged = null;
+        JsonArray pages = new JsonArray();
+        JsonArray entries = new JsonArray();
+        try {
+            for (Path part : parts) {
+                if (!Files.isRegularFile(part)) {
+                    // context that was never closed, or closed before it saw any traffic
+                    continue;
+                }
+                JsonObject har;
+                try (Reader reader = Files.newBufferedReader(part, StandardCharsets.UTF_8)) {
+                    har = GSON.fromJson(reader, JsonObject.class);
+                }
+                JsonObject log = har.getAsJsonObject("log");
+                if (merged == null) {
+                    merged = har;
+                }
+                if (log.has("pages")) {
+                    pages.addAll(log.getAsJsonArray("pages"));
+                }
+                if (log.has("entries")) {
+                    entries.addAll(log.getAsJsonArray("entries"));
+                }
+            }
+            if (merged != null) {
+                merged.getAsJsonObject("log").add("pages", pages);
+                merged.getAsJsonObject("log").add("entries", entries);
+                try (Writer writer = Files.newBufferedWriter(HAR_FILE, StandardCharsets.UTF_8)) {
+                    GSON.toJson(merged, writer);
+                }
+            }
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Cannot merge recorded HAR parts into " + HAR_FILE, e);
+        }
+    }
+
+    private static Path nextPart() {
+        String name = HAR_FILE.getFileName().toString().replaceFirst("\\.har$", "");
+        Path part = HAR_FILE.toAbsolutePath().resolveSibling(String.format("%s-%d-%d.har",
+                name, ProcessHandle.current().pid(), PART_COUNTER.incrementAndGet()));
+        synchronized (PARTS) {
+            PARTS.add(part);
+        }
+        return part;
+    }
+}
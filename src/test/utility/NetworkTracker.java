@@ -0,0 +1,91 @@
+package test.utility;
+
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.TimeoutError;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the requests a page has in flight, using Playwright request events.
+ * One tracker is registered per page for its whole lifetime (dropped when the page closes) and
+ * is used to wait for the network to go quiet after an action, instead of sleeping for a fixed time.
+ */
+public final class NetworkTracker {
+
+    private static final Map<Page, NetworkTracker> TRACKERS = Collections.synchronizedMap(new HashMap<>());
+
+    private final Page page;
+    private int inFlight;
+    private long lastActivity = System.currentTimeMillis();
+
+    private NetworkTracker(Page page) {
+        this.page = page;
+        page.onRequest(request -> {
+            inFlight++;
+            lastActivity = System.currentTimeMillis();
+        });
+        page.onRequestFinished(request -> settle());
+        page.onRequestFailed(request -> settle());
+        // the tracker references its page, so a weak map would never let go of it
+        page.onClose(closed -> TRACKERS.remove(closed));
+    }
+
+    /**
+     * Network tracker of a page, registering its listeners on first use
+     * @param page Page to watch
+     * @return Tracker bound to the page
+     */
+    public static NetworkTracker forPage(Page page) {
+        return TRACKERS.computeIfAbsent(page, NetworkTracker::new);
+    }
+
+    /**
+     * Number of requests started but not yet finished or failed
+     * @return Requests in flight
+     */
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Wait until no request has been in flight for quietMs milliseconds
+     * @param quietMs Length of the quiet window in milliseconds
+     * @param timeoutMs Maximum time to wait in milliseconds
+     * @throws TimeoutError If the network does not go quiet within the timeout
+     */
+    public void awaitIdle(int quietMs, int timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                throw new TimeoutError("Network not idle after " + timeoutMs + " ms, " + inFlight + " request(s) in flight");
+            }
+            long remaining = deadline - now;
+            if (inFlight > 0) {
+                // Returns on the next request event
+                try {
+                    page.waitForCondition(() -> inFlight == 0,
+                            new Page.WaitForConditionOptions().setTimeout(remaining));
+                } catch (TimeoutError e) {
+                    // Loop reports the timeout
+                }
+                continue;
+            }
+            long quietFor = now - lastActivity;
+            if (quietFor >= quietMs) {
+                return;
+            }
+            // Let the page deliver events for the rest of the quiet window
+            page.waitForTimeout(Math.min(quietMs - quietFor, remaining));
+        }
+    }
+
+    private void settle() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        lastActivity = System.currentTimeMillis();
+    }
+}
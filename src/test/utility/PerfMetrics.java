@@ -0,0 +1,453 @@
+package test.utility;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.microsoft.playwright.CDPSession;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import org.testng.ITestResult;
+import org.testng.Reporter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in browser-side performance metrics per test.
+ * Every page load of a test's page is measured around the page-object step that caused it:
+ * Navigation Timing, FCP/LCP/CLS, Resource Timing totals and the slowest resources, the JS heap
+ * and the Chrome DevTools Performance.getMetrics counters (script, layout and style recalculation
+ * time, DOM nodes). The navigations of a test are written to test-output/perf/{test}.json and
+ * summarized in its report entry; percentiles per page and metric go to test-output/perf/summary.csv.
+ * Budgets turn the suite into a performance gate: a navigation measured during a test body that
+ * exceeds a budget fails it. Loads measured outside the test body (in @BeforeMethod/@AfterMethod
+ * steps, or after the last page-object step) can only be reported as warnings; tests gate those
+ * with assertPerfBudget.
+ *
+ * Settings:
+ *   perf.enabled     collect metrics for every test (default false)
+ *   perf.budgets     comma separated urlPart:metric=max, e.g. inventory.html:lcp=2500,*:cls=0.1
+ *   perf.cdp         also read the Performance.getMetrics counters (default true)
+ *   perf.resources   number of slowest resources listed per navigation (default 5)
+ */
+public final class PerfMetrics {
+
+    static final boolean ENABLED = FrameworkConfig.getBoolean("perf.enabled", false);
+
+    private static final boolean CDP = FrameworkConfig.getBoolean("perf.cdp", true);
+    private static final int TOP_RESOURCES = Math.max(0, FrameworkConfig.getInt("perf.resources", 5));
+    private static final List<Budget> BUDGETS = parseBudgets(FrameworkConfig.get("perf.budgets", ""));
+    private static final Set<String> CDP_COUNTERS = new HashSet<>(Arrays.asList("ScriptDuration", "LayoutDuration",
+            "RecalcStyleDuration", "TaskDuration", "LayoutCount", "RecalcStyleCount", "Nodes", "JSEventListeners",
+            "JSHeapUsedSize", "Documents", "Frames"));
+
+    // pages with a load listener, and whether a load happened that is not measured yet
+    private static final Map<Page, boolean[]> PENDING = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<Page, CDPSession> SESSIONS = Collections.synchronizedMap(new WeakHashMap<>());
+    // browser types without the Chrome DevTools protocol, e.g. firefox and webkit
+    private static final Set<String> NO_CDP = ConcurrentHashMap.newKeySet();
+
+    private static final ThreadLocal<List<Navigation>> NAVIGATIONS = ThreadLocal.withInitial(ArrayList::new);
+    private static final ThreadLocal<String> LAST_STEP = new ThreadLocal<>();
+    // set while the test method itself runs, budgets are only enforced there
+    private static final ThreadLocal<Boolean> IN_TEST_BODY = new ThreadLocal<>();
+    private static final ThreadLocal<List<String>> LATE_VIOLATIONS = ThreadLocal.withInitial(ArrayList::new);
+
+    private static final Map<String, LatencyHistogram> SUMMARY = new ConcurrentHashMap<>();
+    private static final AtomicInteger testNumber = new AtomicInteger();
+
+    private PerfMetrics() {
+    }
+
+    /**
+     * Metrics of one page load
+     */
+    public static final class Navigation {
+        final String url;
+        final String step;
+        final Map<String, Double> metrics;
+        final Object slowestResources;
+
+        Navigation(String url, String step, Map<String, Double> metrics, Object slowestResources) {
+            this.url = url;
+            this.step = step;
+            this.metrics = metrics;
+            this.slowestResources = slowestResources;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public Map<String, Double> getMetrics() {
+            return metrics;
+        }
+    }
+
+    /**
+     * Maximum value of a metric for pages whose URL contains a text
+     */
+    private static final class Budget {
+        final String urlPart;
+        final String metric;
+        final double max;
+
+        Budget(String urlPart, String metric, double max) {
+            this.urlPart = urlPart;
+            this.metric = metric;
+            this.max = max;
+        }
+
+        boolean appliesTo(Navigation navigation) {
+            return ("*".equals(urlPart) || navigation.url.contains(urlPart)) && navigation.metrics.containsKey(metric);
+        }
+
+        String check(Navigation navigation) {
+            double value = navigation.metrics.get(metric);
+            return value <= max ? null : String.format(Locale.ROOT, "Performance budget exceeded on %s: %s = %.1f, budget %.1f",
+                    navigation.url, metric, value, max);
+        }
+    }
+
+    /**
+     * Start measuring the page of a new test
+     * @param page Page of the test
+     */
+    static void startTest(Page page) {
+        // late violations are kept: the reset hooks of a batched row run before this
+        NAVIGATIONS.get().clear();
+        LAST_STEP.remove();
+        if (ENABLED) {
+            watch(page);
+        }
+    }
+
+    /**
+     * Mark whether the test method itself is running on the current thread; set at the end of
+     * the test's @BeforeMethod and cleared by its @AfterMethod
+     * @param inBody true while the test body runs
+     */
+    static void setInTestBody(boolean inBody) {
+        if (inBody) {
+            IN_TEST_BODY.set(true);
+        } else {
+            IN_TEST_BODY.remove();
+        }
+    }
+
+    /**
+     * Measure loads of a page that replaces the test's page, e.g. an authenticated session
+     * @param page New page of the test
+     */
+    static void watch(Page page) {
+        synchronized (PENDING) {
+            if (PENDING.containsKey(page)) {
+                PENDING.get(page)[0] = false;
+                return;
+            }
+            boolean[] pending = {false};
+            PENDING.put(page, pending);
+            page.onLoad(loaded -> pending[0] = true);
+        }
+    }
+
+    /**
+     * Measure a load that finished since the previous page-object step, e.g. after a click
+     * @param page Page the next step runs on
+     * @throws AssertionError If the load exceeds a budget while the test body runs
+     */
+    public static void beforeStep(Page page) {
+        if (ENABLED) {
+            collect(page, LAST_STEP.get(), true);
+        }
+    }
+
+    /**
+     * Measure a load that a page-object step waited for, e.g. a navigation
+     * @param page Page the step ran on
+     * @param step Page object class and action
+     * @throws AssertionError If the load exceeds a budget while the test body runs
+     */
+    public static void afterStep(Page page, String step) {
+        if (ENABLED) {
+            LAST_STEP.set(step);
+            collect(page, step, true);
+        }
+    }
+
+    /**
+     * Measure a pending load and write the test's navigations
+     * @param page Page of the test, may be null
+     * @param testName Report name of the test
+     * @return Budget violations of the loads measured outside the test body, too late to fail the test
+     * @throws IOException If the metrics file cannot be written
+     */
+    static List<String> finishTest(Page page, String testName) throws IOException {
+        List<String> violations = new ArrayList<>(LATE_VIOLATIONS.get());
+        LATE_VIOLATIONS.get().clear();
+        if (page != null && !page.isClosed()) {
+            Navigation navigation = collect(page, LAST_STEP.get(), false);
+            if (navigation != null) {
+                violations.addAll(violations(navigation));
+            }
+        }
+        List<Navigation> navigations = NAVIGATIONS.get();
+        if (!navigations.isEmpty()) {
+            Path directory = FrameworkConfig.outputDir().resolve("perf");
+            Files.createDirectories(directory);
+            String fileName = String.format("%05d_%s.json", testNumber.incrementAndGet(), testName.replaceAll("[^a-zA-Z0-9._-]", "_"));
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("test", testName);
+            file.put("navigations", navigations);
+            file.put("lateBudgetViolations", violations);
+            try (Writer writer = Files.newBufferedWriter(directory.resolve(fileName.length() > 150
+                    ? fileName.substring(0, 145) + ".json" : fileName), StandardCharsets.UTF_8)) {
+                new GsonBuilder().setPrettyPrinting().create().toJson(file, writer);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Navigations measured for the current test as an HTML table for the report
+     * @return Table markup, or null if nothing was measured
+     */
+    static String toHtml() {
+        List<Navigation> navigations = NAVIGATIONS.get();
+        if (navigations.isEmpty()) {
+            return null;
+        }
+        String[] columns = {"ttfb", "domContentLoaded", "load", "fcp", "lcp", "cls", "resourceCount", "transferKb",
+                "jsHeapMb", "cdp.ScriptDuration", "cdp.LayoutDuration"};
+        StringBuilder html = new StringBuilder("<table><tr><th>page</th><th>step</th>");
+        for (String column : columns) {
+            html.append("<th>").append(column).append("</th>");
+        }
+        html.append("</tr>");
+        for (Navigation navigation : navigations) {
+            html.append("<tr><td>").append(escape(navigation.url)).append("</td><td>")
+                    .append(escape(String.valueOf(navigation.step))).append("</td>");
+            for (String column : columns) {
+                Double value = navigation.metrics.get(column);
+                html.append("<td>").append(value == null ? "" : String.format(Locale.ROOT,
+                        column.equals("cls") ? "%.3f" : "%.1f", value)).append("</td>");
+            }
+            html.append("</tr>");
+        }
+        return html.append("</table>").toString();
+    }
+
+    /**
+     * Check a budget against the loads of the current test whose URL contains a text; when none
+     * was measured (perf.enabled=false) the page's current document is measured now
+     * @param page Page of the test
+     * @param urlPart Part of the page URL, e.g. inventory.html
+     * @param metric Metric name, e.g. lcp, load, cls, jsHeapMb, cdp.ScriptDuration
+     * @param max Largest accepted value
+     * @throws AssertionError If the budget is exceeded or no matching page was loaded
+     */
+    public static void assertBudget(Page page, String urlPart, String metric, double max) {
+        collect(page, LAST_STEP.get(), false);
+        Budget budget = new Budget(urlPart, metric, max);
+        List<Navigation> matching = new ArrayList<>();
+        for (Navigation navigation : NAVIGATIONS.get()) {
+            if (navigation.url.contains(urlPart)) {
+                matching.add(navigation);
+            }
+        }
+        if (matching.isEmpty() && page.url().contains(urlPart)) {
+            matching.add(measure(page, LAST_STEP.get()));
+        }
+        if (matching.isEmpty()) {
+            throw new AssertionError("No page load matching " + urlPart + " was measured");
+        }
+        for (Navigation navigation : matching) {
+            if (!navigation.metrics.containsKey(metric)) {
+                throw new AssertionError("Metric " + metric + " was not measured on " + navigation.url);
+            }
+            String violation = budget.check(navigation);
+            if (violation != null) {
+                throw new AssertionError(violation);
+            }
+        }
+    }
+
+    /**
+     * Write p50/p95/max per page and metric over the run to perf/summary.csv
+     * @param directory Output folder, e.g. test-output
+     * @throws IOException If the file cannot be written
+     */
+    static void export(Path directory) throws IOException {
+        if (SUMMARY.isEmpty()) {
+            return;
+        }
+        Path perf = directory.resolve("perf");
+        Files.createDirectories(perf);
+        try (Writer csv = Files.newBufferedWriter(perf.resolve("summary.csv"), StandardCharsets.UTF_8)) {
+            csv.write("page,metric,count,p50,p95,max\n");
+            for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(SUMMARY).entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                csv.write(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,%.3f\n", entry.getKey(), histogram.getCount(),
+                        histogram.getPercentileMillis(50), histogram.getPercentileMillis(95), histogram.getMaxMillis()));
+            }
+        }
+    }
+
+    private static Navigation collect(Page page, String step, boolean enforceBudgets) {
+        boolean[] pending = PENDING.get(page);
+        if (pending == null || !pending[0] || page.isClosed()) {
+            return null;
+        }
+        pending[0] = false;
+        Navigation navigation;
+        try {
+            navigation = measure(page, step);
+        } catch (PlaywrightException e) {
+            // the document went away while it was measured, e.g. another navigation started
+            return null;
+        }
+        if (enforceBudgets) {
+            List<String> violations = violations(navigation);
+            if (violations.isEmpty()) {
+                return navigation;
+            }
+            if (isInTestBody()) {
+                throw new AssertionError(String.join("; ", violations));
+            }
+            // a configuration method failing would skip the rest of the class
+            LATE_VIOLATIONS.get().addAll(violations);
+        }
+        return navigation;
+    }
+
+    private static boolean isInTestBody() {
+        ITestResult current = Reporter.getCurrentTestResult();
+        // subclass @AfterMethod hooks run before Commons clears the flag
+        return Boolean.TRUE.equals(IN_TEST_BODY.get()) && current != null && current.getMethod().isTest();
+    }
+
+    private static Navigation measure(Page page, String step) {
+        String url = page.url();
+        Map<String, Double> metrics = new LinkedHashMap<>(PerfScripts.navigationTiming(page));
+        metrics.putAll(PerfScripts.webVitals(page));
+        Map<String, Object> resources = PerfScripts.resources(page, TOP_RESOURCES);
+        putNumber(metrics, "resourceCount", resources.get("count"), 1);
+        putNumber(metrics, "transferKb", resources.get("transferSize"), 1024);
+        putNumber(metrics, "jsHeapMb", resources.get("jsHeapUsed"), 1024 * 1024);
+        if (CDP) {
+            metrics.putAll(cdpMetrics(page));
+        }
+        Navigation navigation = new Navigation(url, step, metrics, resources.get("slowest"));
+        NAVIGATIONS.get().add(navigation);
+        String pageKey = pageKey(url);
+        // histograms hold nanoseconds; values are stored so that getPercentileMillis returns the metric itself
+        metrics.forEach((metric, value) -> SUMMARY.computeIfAbsent(pageKey + "," + metric, key -> new LatencyHistogram())
+                .recordNanos((long) (value * 1_000_000)));
+        return navigation;
+    }
+
+    private static Map<String, Double> cdpMetrics(Page page) {
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        String browserType = page.context().browser() == null ? "" : page.context().browser().browserType().name();
+        if (NO_CDP.contains(browserType)) {
+            return metrics;
+        }
+        CDPSession session;
+        synchronized (SESSIONS) {
+            session = SESSIONS.get(page);
+            if (session == null) {
+                try {
+                    session = page.context().newCDPSession(page);
+                    session.send("Performance.enable");
+                } catch (PlaywrightException e) {
+                    // CDP sessions are only supported on Chromium
+                    NO_CDP.add(browserType);
+                    return metrics;
+                }
+                SESSIONS.put(page, session);
+            }
+        }
+        try {
+            JsonObject result = session.send("Performance.getMetrics");
+            for (JsonElement element : result.getAsJsonArray("metrics")) {
+                JsonObject metric = element.getAsJsonObject();
+                String name = metric.get("name").getAsString();
+                if (CDP_COUNTERS.contains(name)) {
+                    double value = metric.get("value").getAsDouble();
+                    // durations are reported in seconds
+                    metrics.put("cdp." + name, name.endsWith("Duration") ? value * 1000 : value);
+                }
+            }
+        } catch (PlaywrightException e) {
+            // the session was detached, e.g. by a cross-process navigation; open a new one next time
+            SESSIONS.remove(page);
+        }
+        return metrics;
+    }
+
+    private static List<String> violations(Navigation navigation) {
+        List<String> violations = new ArrayList<>();
+        for (Budget budget : BUDGETS) {
+            if (budget.appliesTo(navigation)) {
+                String violation = budget.check(navigation);
+                if (violation != null) {
+                    violations.add(violation);
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static void putNumber(Map<String, Double> metrics, String name, Object value, double divisor) {
+        if (value instanceof Number) {
+            metrics.put(name, ((Number) value).doubleValue() / divisor);
+        }
+    }
+
+    private static String pageKey(String url) {
+        try {
+            String path = URI.create(url).getPath();
+            return path == null || path.isEmpty() ? "/" : path;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private static List<Budget> parseBudgets(String value) {
+        List<Budget> budgets = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (item.trim().isEmpty()) {
+                continue;
+            }
+            int colon = item.lastIndexOf(':', item.indexOf('='));
+            int equals = item.indexOf('=');
+            if (colon < 0 || equals < colon) {
+                throw new IllegalArgumentException("Performance budget must be urlPart:metric=max: " + item);
+            }
+            budgets.add(new Budget(item.substring(0, colon).trim(), item.substring(colon + 1, equals).trim(),
+                    Double.parseDouble(item.substring(equals + 1).trim())));
+        }
+        return budgets;
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
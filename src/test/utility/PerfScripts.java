@@ -0,0 +1,100 @@
+package test.utility;
+
+import com.microsoft.playwright.Page;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Browser-side Performance API reads shared by LoadRunner and PerfMetrics.
+ * All values are milliseconds relative to the start of the navigation, except CLS which is a
+ * unitless score.
+ */
+final class PerfScripts {
+
+    // Navigation Timing Level 2 entry of the current document
+    private static final String NAVIGATION_TIMING = "() => {"
+            + "  const n = performance.getEntriesByType('navigation')[0];"
+            + "  if (!n) return {};"
+            + "  return { ttfb: n.responseStart - n.startTime, responseEnd: n.responseEnd - n.startTime,"
+            + "    domInteractive: n.domInteractive - n.startTime,"
+            + "    domContentLoaded: n.domContentLoadedEventEnd - n.startTime,"
+            + "    load: n.loadEventEnd > 0 ? n.loadEventEnd - n.startTime : null,"
+            + "    transferSize: n.transferSize };"
+            + "}";
+
+    // FCP from the paint timeline; LCP and CLS from buffered observers, read once and disconnected
+    private static final String WEB_VITALS = "() => new Promise(resolve => {"
+            + "  const result = { fcp: null, lcp: null, cls: 0 };"
+            + "  const paint = performance.getEntriesByName('first-contentful-paint')[0];"
+            + "  if (paint) result.fcp = paint.startTime;"
+            + "  let pending = 2;"
+            + "  const done = () => { if (--pending === 0) resolve(result); };"
+            + "  const observe = (type, handle) => {"
+            + "    try {"
+            + "      const observer = new PerformanceObserver(list => handle(list.getEntries()));"
+            + "      observer.observe({ type: type, buffered: true });"
+            + "      setTimeout(() => { handle(observer.takeRecords()); observer.disconnect(); done(); }, 0);"
+            + "    } catch (e) { done(); }"
+            + "  };"
+            + "  observe('largest-contentful-paint', entries => entries.forEach(e => { result.lcp = Math.max(result.lcp || 0, e.startTime); }));"
+            + "  observe('layout-shift', entries => entries.forEach(e => { if (!e.hadRecentInput) result.cls += e.value; }));"
+            + "})";
+
+    // Resource Timing totals, the slowest resources and the JS heap (Chromium only)
+    private static final String RESOURCES = "top => {"
+            + "  const resources = performance.getEntriesByType('resource');"
+            + "  const slowest = resources.slice().sort((a, b) => b.duration - a.duration).slice(0, top)"
+            + "    .map(e => ({ name: e.name, initiator: e.initiatorType, durationMs: Math.round(e.duration) }));"
+            + "  return { count: resources.length,"
+            + "    transferSize: resources.reduce((sum, e) => sum + (e.transferSize || 0), 0),"
+            + "    slowest: slowest,"
+            + "    jsHeapUsed: performance.memory ? performance.memory.usedJSHeapSize : null };"
+            + "}";
+
+    private PerfScripts() {
+    }
+
+    /**
+     * Navigation timing of the page's current document
+     * @param page Loaded page
+     * @return ttfb, responseEnd, domInteractive, domContentLoaded, load (ms) and transferSize (bytes);
+     * values the browser has not reached yet are missing
+     */
+    static Map<String, Double> navigationTiming(Page page) {
+        return numbers(page.evaluate(NAVIGATION_TIMING));
+    }
+
+    /**
+     * Web Vitals of the page's current document observed so far
+     * @param page Loaded page
+     * @return fcp and lcp (ms) if painted, cls (score)
+     */
+    static Map<String, Double> webVitals(Page page) {
+        return numbers(page.evaluate(WEB_VITALS));
+    }
+
+    /**
+     * Resources loaded by the page's current document and its JS heap
+     * @param page Loaded page
+     * @param top Number of slowest resources to list
+     * @return count, transferSize (bytes), slowest (list of name/initiator/durationMs), jsHeapUsed (bytes, Chromium only)
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> resources(Page page, int top) {
+        Object evaluated = page.evaluate(RESOURCES, top);
+        return evaluated instanceof Map ? (Map<String, Object>) evaluated : new LinkedHashMap<>();
+    }
+
+    private static Map<String, Double> numbers(Object evaluated) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        if (evaluated instanceof Map) {
+            ((Map<?, ?>) evaluated).forEach((key, value) -> {
+                if (value instanceof Number) {
+                    values.put(String.valueOf(key), ((Number) value).doubleValue());
+                }
+            });
+        }
+        return values;
+    }
+}
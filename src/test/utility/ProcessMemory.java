@@ -0,0 +1,68 @@
+package test.utility;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Reads the resident set size (RSS) of the test JVM and of the processes it spawned,
+ * i.e. the Playwright driver and the browsers. Uses /proc, so it only reports on Linux.
+ */
+public final class ProcessMemory {
+
+    private ProcessMemory() {
+    }
+
+    /**
+     * RSS of the current JVM
+     * @return Resident bytes, or -1 when it cannot be read on this platform
+     */
+    public static long jvmRssBytes() {
+        return rssBytes(ProcessHandle.current().pid());
+    }
+
+    /**
+     * RSS of all child processes of the JVM (Playwright driver and browsers)
+     * @return Resident bytes, or -1 when it cannot be read on this platform
+     */
+    public static long browserRssBytes() {
+        long total = 0;
+        boolean found = false;
+        for (ProcessHandle child : (Iterable<ProcessHandle>) ProcessHandle.current().descendants()::iterator) {
+            long rss = rssBytes(child.pid());
+            if (rss >= 0) {
+                total += rss;
+                found = true;
+            }
+        }
+        return found ? total : -1;
+    }
+
+    /**
+     * Format a byte count for report output
+     * @param bytes Byte count, negative when unknown
+     * @return Size in MB, or "n/a"
+     */
+    public static String toMb(long bytes) {
+        return bytes < 0 ? "n/a" : String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static long rssBytes(long pid) {
+        Path status = Paths.get("/proc", String.valueOf(pid), "status");
+        try {
+            List<String> lines = Files.readAllLines(status, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                if (line.startsWith("VmRSS:")) {
+                    String kb = line.substring("VmRSS:".length()).replace("kB", "").trim();
+                    return Long.parseLong(kb) * 1024L;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Not Linux, or the process ended while being read
+        }
+        return -1;
+    }
+}
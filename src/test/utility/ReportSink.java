@@ -0,0 +1,36 @@
+package test.utility;
+
+import com.aventstack.extentreports.Status;
+
+/**
+ * Destination of report events, fed by the ReportWriter thread.
+ * All methods are called from that single thread, so implementations need no locking.
+ */
+interface ReportSink {
+
+    void createTest(ReportWriter.TestHandle handle);
+
+    /**
+     * @param message Text of the line, null when a throwable is logged
+     * @param throwable Exception of the line, or null
+     */
+    void log(ReportWriter.TestHandle handle, Status status, String message, Throwable throwable);
+
+    /**
+     * @param screenshotPath Path relative to the report output folder
+     */
+    void attachScreenshot(ReportWriter.TestHandle handle, String screenshotPath);
+
+    void finish(ReportWriter.TestHandle handle);
+
+    /**
+     * Write what is buffered; called in batches while tests run and once at the end
+     */
+    void flush();
+
+    /**
+     * Release open files; called once after the final flush
+     */
+    default void close() {
+    }
+}
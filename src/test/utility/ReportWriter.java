@@ -0,0 +1,311 @@
+package test.utility;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.Status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background report writer.
+ * Test threads only enqueue report events; a single writer thread applies them to the report
+ * sinks and flushes them in batches instead of after every test. The sinks are ExtentReports
+ * (TestReport.html, rewritten in full on each flush) and/or the incremental fragment report
+ * (report/index.html, written per test as it finishes, see FragmentReportSink).
+ * A flush is triggered when enough tests finished or the flush interval elapsed, but never
+ * sooner than {@code FLUSH_COST_FACTOR} times the duration of the previous flush, so the
+ * growing cost of rewriting TestReport.html stays a bounded fraction of the run.
+ * The report is always flushed when the suite ends or the JVM shuts down.
+ *
+ * Settings:
+ *   report.flush.batchSize    finished tests that trigger a flush (default 25)
+ *   report.flush.intervalMs   maximum time between flushes while tests finish (default 5000)
+ *   report.mode               extent | fragments | both (default extent)
+ */
+public final class ReportWriter {
+
+    private static final int BATCH_SIZE = FrameworkConfig.getInt("report.flush.batchSize", 25);
+    private static final long FLUSH_INTERVAL_MS = FrameworkConfig.getInt("report.flush.intervalMs", 5000);
+    private static final int FLUSH_COST_FACTOR = 10;
+    private static final String MODE = FrameworkConfig.get("report.mode", "extent").toLowerCase(Locale.ROOT);
+
+    private static final Event SHUTDOWN = new Event(Kind.SHUTDOWN, null, null, null, null);
+
+    private static final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+    private static final List<ReportSink> sinks = new ArrayList<>();
+    private static final List<String> notes = new ArrayList<>();
+    private static volatile Thread writer;
+
+    private ReportWriter() {
+    }
+
+    /**
+     * Report entry owned by one test. Created by the test thread, filled in by the writer thread.
+     */
+    public static final class TestHandle {
+        private final String name;
+        private final String description;
+        private final String[] categories;
+
+        private TestHandle(String name, String description, String[] categories) {
+            this.name = name;
+            this.description = description;
+            this.categories = categories;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        String getDescription() {
+            return description;
+        }
+
+        String[] getCategories() {
+            return categories;
+        }
+    }
+
+    /**
+     * Whether TestReport.html is written (report.mode extent or both)
+     * @return true if Commons should set up ExtentReports
+     */
+    public static boolean writesExtent() {
+        return !"fragments".equals(MODE);
+    }
+
+    /**
+     * Whether the incremental fragment report is written (report.mode fragments or both)
+     * @return true if report/index.html is produced
+     */
+    public static boolean writesFragments() {
+        return "fragments".equals(MODE) || "both".equals(MODE);
+    }
+
+    private enum Kind { CREATE, LOG, SCREENSHOT, FINISH, SHUTDOWN }
+
+    private static final class Event {
+        private final Kind kind;
+        private final TestHandle handle;
+        private final Status status;
+        private final String message;
+        private final Throwable throwable;
+
+        private Event(Kind kind, TestHandle handle, Status status, String message, Throwable throwable) {
+            this.kind = kind;
+            this.handle = handle;
+            this.status = status;
+            this.message = message;
+            this.throwable = throwable;
+        }
+    }
+
+    /**
+     * Start the writer thread for the given report
+     * @param reports ExtentReports instance with its reporters attached, null when only fragments are written
+     */
+    public static synchronized void start(ExtentReports reports) {
+        if (writer != null) {
+            return;
+        }
+        sinks.clear();
+        if (reports != null) {
+            sinks.add(new ExtentReportSink(reports));
+        }
+        if (writesFragments()) {
+            sinks.add(new FragmentReportSink(FrameworkConfig.outputDir()));
+        }
+        writer = new Thread(ReportWriter::run, "extent-report-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(ReportWriter::shutdown, "extent-report-shutdown"));
+    }
+
+    /**
+     * Create a report entry for a test
+     * @param name Name of the test
+     * @param description Description of the test
+     * @param categories Tags of the entry, e.g. the browser engine
+     * @return Handle used for subsequent log calls
+     */
+    public static TestHandle createTest(String name, String description, String... categories) {
+        TestHandle handle = new TestHandle(name, description, categories);
+        queue.add(new Event(Kind.CREATE, handle, null, null, null));
+        return handle;
+    }
+
+    /**
+     * Queue a log line for a test
+     * @param handle Test entry
+     * @param status Extent status of the line
+     * @param message Text of the line
+     */
+    public static void log(TestHandle handle, Status status, String message) {
+        queue.add(new Event(Kind.LOG, handle, status, message, null));
+    }
+
+    /**
+     * Queue an exception for a test
+     * @param handle Test entry
+     * @param status Extent status of the entry
+     * @param throwable Exception to render
+     */
+    public static void log(TestHandle handle, Status status, Throwable throwable) {
+        queue.add(new Event(Kind.LOG, handle, status, null, throwable));
+    }
+
+    /**
+     * Keep a line about the run itself (e.g. from a listener that runs before any test) for the
+     * report's Browser lifecycle entry, written when the suite ends
+     * @param message Text of the line
+     */
+    public static void note(String message) {
+        synchronized (notes) {
+            notes.add(message);
+        }
+    }
+
+    /**
+     * Take the lines kept by note()
+     * @return Lines in the order they were noted
+     */
+    public static List<String> takeNotes() {
+        synchronized (notes) {
+            List<String> taken = new ArrayList<>(notes);
+            notes.clear();
+            return taken;
+        }
+    }
+
+    /**
+     * Queue a screenshot attachment for a test
+     * @param handle Test entry
+     * @param screenshotPath Path relative to the report
+     */
+    public static void attachScreenshot(TestHandle handle, String screenshotPath) {
+        queue.add(new Event(Kind.SCREENSHOT, handle, null, screenshotPath, null));
+    }
+
+    /**
+     * Mark a test as finished; finished tests count towards the next batch flush
+     * @param handle Test entry
+     */
+    public static void finish(TestHandle handle) {
+        queue.add(new Event(Kind.FINISH, handle, null, null, null));
+    }
+
+    /**
+     * Write every queued event, flush the report and stop the writer thread
+     */
+    public static synchronized void shutdown() {
+        Thread current = writer;
+        if (current == null) {
+            return;
+        }
+        queue.add(SHUTDOWN);
+        try {
+            current.join(TimeUnit.MINUTES.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    private static void run() {
+        int finishedSinceFlush = 0;
+        long lastFlush = System.currentTimeMillis();
+        long lastFlushCost = 0;
+        boolean dirty = false;
+        try {
+            while (true) {
+                Event event = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (event == SHUTDOWN) {
+                    break;
+                }
+                if (event != null) {
+                    if (apply(event)) {
+                        finishedSinceFlush++;
+                    }
+                    dirty = true;
+                }
+
+                long now = System.currentTimeMillis();
+                boolean due = finishedSinceFlush >= BATCH_SIZE || now - lastFlush >= FLUSH_INTERVAL_MS;
+                boolean affordable = now - lastFlush >= lastFlushCost * FLUSH_COST_FACTOR;
+                if (dirty && due && affordable) {
+                    flushSinks();
+                    lastFlushCost = System.currentTimeMillis() - now;
+                    lastFlush = System.currentTimeMillis();
+                    finishedSinceFlush = 0;
+                    dirty = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Event event;
+        while ((event = queue.poll()) != null) {
+            if (event != SHUTDOWN) {
+                apply(event);
+            }
+        }
+        flushSinks();
+        for (ReportSink sink : sinks) {
+            try {
+                sink.close();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to close report: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void flushSinks() {
+        for (ReportSink sink : sinks) {
+            try {
+                sink.flush();
+            } catch (RuntimeException e) {
+                System.err.println("Failed to flush report: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Apply one event to every sink
+     * @return true if the event marks the end of a test
+     */
+    private static boolean apply(Event event) {
+        for (ReportSink sink : sinks) {
+            try {
+                applyTo(sink, event);
+            } catch (RuntimeException e) {
+                // A broken entry must not stop the writer thread
+                System.err.println("Failed to write report event for " + event.handle.name + ": " + e.getMessage());
+            }
+        }
+        return event.kind == Kind.FINISH;
+    }
+
+    private static void applyTo(ReportSink sink, Event event) {
+        switch (event.kind) {
+            case CREATE:
+                sink.createTest(event.handle);
+                break;
+            case SCREENSHOT:
+                sink.attachScreenshot(event.handle, event.message);
+                break;
+            case LOG:
+                sink.log(event.handle, event.status, event.message, event.throwable);
+                break;
+            case FINISH:
+                sink.finish(event.handle);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package test.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outcome of the last run of every test method and what it depends on, kept in
+ * test-output/history/runs.json next to the DurationHistory.
+ * Entries are keyed by "class.method"; the data rows of a run are folded into one entry (worst
+ * outcome, summed duration). Besides outcome and duration an entry lists the page object classes
+ * (test.pageobjects.*) the test constructed, its data provider and the data files that provider
+ * read, as seen in its last run. ChangedOnlySelector uses this to map changed files to tests.
+ * Page objects report themselves from their constructor and DataRows reports the files it opens;
+ * both are collected per thread. Page objects are collected from the start of the test's
+ * @BeforeMethod to the end of its @AfterMethod (see Commons), so reset hooks count for their own
+ * test. Attempts that FlakyRetry retries do not count as outcomes, only as failures. Several JVMs
+ * can save into the same file; updates are merged under a file lock. JVMs that are parts of one
+ * run (the shards of a ShardedSuiteRunner, given the same history.runId) fold their entries of a
+ * method together like data rows, so one shard's PASS does not hide another's FAIL.
+ *
+ * Settings:
+ *   history.runId   id shared by the JVMs of one run (default a new id per JVM)
+ */
+public final class RunHistory {
+
+    private static final Type ENTRIES = new TypeToken<Map<String, Entry>>() { }.getType();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Path WORKING_DIR = Paths.get(System.getProperty("user.dir")).toAbsolutePath();
+    private static final String RUN_ID = FrameworkConfig.get("history.runId", UUID.randomUUID().toString());
+
+    // filled while a test (or data provider) runs on the thread, taken when it finishes
+    private static final ThreadLocal<Set<String>> PAGE_OBJECTS = ThreadLocal.withInitial(TreeSet::new);
+    private static final ThreadLocal<Set<String>> DATA_FILES = ThreadLocal.withInitial(TreeSet::new);
+
+    private static RunHistory shared;
+
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private final Map<String, Entry> recorded = new HashMap<>();
+    // data files read by the provider of each test method in this run
+    private final Map<String, Set<String>> providerFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Last run of one test method
+     */
+    static final class Entry {
+        String outcome;
+        long millis;
+        long finishedAt;
+        // epoch millis of the last failed run, 0 if it never failed
+        long lastFailedAt;
+        int runs;
+        // run that wrote the entry, see history.runId
+        String runId;
+        String dataProvider;
+        Set<String> pageObjects = new TreeSet<>();
+        Set<String> dataFiles = new TreeSet<>();
+    }
+
+    private RunHistory(Path file, Map<String, Entry> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * History of this JVM, loaded on first use and shared by the listeners
+     * @return Shared history
+     */
+    public static synchronized RunHistory shared() {
+        if (shared == null) {
+            shared = new RunHistory(DurationHistory.directory().resolve("runs.json"),
+                    read(DurationHistory.directory().resolve("runs.json")));
+        }
+        return shared;
+    }
+
+    /**
+     * Note that the test running on the current thread uses a page object
+     * @param pageObjectClass Page object class; its page object superclasses are noted too
+     */
+    public static void touchPageObject(Class<?> pageObjectClass) {
+        Set<String> touched = PAGE_OBJECTS.get();
+        for (Class<?> type = pageObjectClass; type != null && type.getName().startsWith("test.pageobjects."); type = type.getSuperclass()) {
+            touched.add(type.getName());
+        }
+    }
+
+    /**
+     * Forget the page objects noted on the current thread, called when a test's @BeforeMethod starts
+     */
+    static void startTest() {
+        PAGE_OBJECTS.get().clear();
+    }
+
+    /**
+     * Note that the data provider running on the current thread reads a data file
+     * @param dataFile Data file
+     */
+    static void touchDataFile(Path dataFile) {
+        DATA_FILES.get().add(relativePath(dataFile));
+    }
+
+    /**
+     * Path as git prints it relative to the working directory, with / separators
+     * @param path File
+     * @return Relative path, or the absolute one for files outside the working directory
+     */
+    static String relativePath(Path path) {
+        Path absolute = path.toAbsolutePath().normalize();
+        Path shown = absolute.startsWith(WORKING_DIR) ? WORKING_DIR.relativize(absolute) : absolute;
+        return shown.toString().replace('\\', '/');
+    }
+
+    /**
+     * History key of a test method, shared by all of its data rows
+     * @param method Test method
+     * @return class.method
+     */
+    static String key(ITestNGMethod method) {
+        return DurationHistory.key(method.getRealClass().getName(), method.getMethodName(), null);
+    }
+
+    /**
+     * Attach the data files read on the current thread to the test method whose provider just ran
+     * @param method Test method
+     */
+    void dataProviderFinished(ITestNGMethod method) {
+        Set<String> files = DATA_FILES.get();
+        providerFiles.put(key(method), new TreeSet<>(files));
+        files.clear();
+    }
+
+    /**
+     * Record the outcome of one test method or data row
+     * @param result Test result
+     * @param outcome PASS, FAIL or SKIP
+     */
+    void record(ITestResult result, String outcome) {
+        String key = key(result.getMethod());
+        synchronized (this) {
+            if (result.wasRetried()) {
+                // the retry's result is the outcome; the failed attempt only counts as a recent failure
+                recorded.computeIfAbsent(key, k -> new Entry()).lastFailedAt = System.currentTimeMillis();
+                return;
+            }
+            Entry entry = recorded.computeIfAbsent(key, k -> new Entry());
+            entry.outcome = worse(entry.outcome, outcome);
+            entry.millis += Math.max(0, result.getEndMillis() - result.getStartMillis());
+            entry.finishedAt = System.currentTimeMillis();
+            if ("FAIL".equals(outcome)) {
+                entry.lastFailedAt = entry.finishedAt;
+            }
+            entry.dataFiles.addAll(providerFiles.getOrDefault(key, Collections.emptySet()));
+            if (result.getMethod().getDataProviderMethod() != null) {
+                java.lang.reflect.Method provider = result.getMethod().getDataProviderMethod().getMethod();
+                entry.dataProvider = provider.getDeclaringClass().getName() + "." + provider.getName();
+            }
+        }
+    }
+
+    /**
+     * Attach the page objects noted on the current thread since startTest, called when the test's
+     * @AfterMethod finishes
+     * @param result Test result
+     */
+    void finishTest(ITestResult result) {
+        Set<String> pageObjects = new TreeSet<>(PAGE_OBJECTS.get());
+        PAGE_OBJECTS.get().clear();
+        synchronized (this) {
+            Entry entry = recorded.get(key(result.getMethod()));
+            if (entry != null) {
+                entry.pageObjects.addAll(pageObjects);
+            }
+        }
+    }
+
+    /**
+     * Last run of a test method
+     * @param key class.method
+     * @return Entry, or null if the test never ran
+     */
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Write the runs recorded by this JVM, merged with what other JVMs saved meanwhile
+     * @throws IOException If the file cannot be written
+     */
+    public synchronized void save() throws IOException {
+        if (recorded.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // released when the channel closes
+            channel.lock();
+            Map<String, Entry> latest = read(file);
+            recorded.forEach((key, run) -> merge(latest, key, run));
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                GSON.toJson(new TreeMap<>(latest), ENTRIES, writer);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            entries.clear();
+            entries.putAll(latest);
+            recorded.clear();
+        }
+    }
+
+    /**
+     * Counts of the outcomes recorded by this JVM, for the report
+     * @return e.g. "12 methods: PASS=11, FAIL=1", or null if nothing was recorded
+     */
+    synchronized String summary() {
+        if (recorded.isEmpty()) {
+            return null;
+        }
+        Map<String, Integer> counts = new TreeMap<>();
+        recorded.values().forEach(entry -> counts.merge(entry.outcome, 1, Integer::sum));
+        return recorded.size() + " methods: " + counts.toString().replaceAll("[{}]", "");
+    }
+
+    private static String worse(String current, String outcome) {
+        List<String> order = List.of("PASS", "SKIP", "FAIL");
+        return current == null || order.indexOf(outcome) > order.indexOf(current) ? outcome : current;
+    }
+
+    private static void merge(Map<String, Entry> target, String key, Entry run) {
+        Entry previous = target.get(key);
+        if (previous != null && RUN_ID.equals(previous.runId)) {
+            // another JVM of this run (e.g. a row shard) already saved the method: fold like data rows
+            previous.outcome = worse(previous.outcome, run.outcome);
+            previous.millis += run.millis;
+            previous.finishedAt = Math.max(previous.finishedAt, run.finishedAt);
+            previous.lastFailedAt = Math.max(previous.lastFailedAt, run.lastFailedAt);
+            previous.pageObjects.addAll(run.pageObjects);
+            previous.dataFiles.addAll(run.dataFiles);
+            return;
+        }
+        Entry entry = new Entry();
+        entry.outcome = run.outcome;
+        entry.millis = run.millis;
+        entry.finishedAt = run.finishedAt;
+        entry.lastFailedAt = Math.max(run.lastFailedAt, previous == null ? 0 : previous.lastFailedAt);
+        entry.runs = (previous == null ? 0 : previous.runs) + 1;
+        entry.runId = RUN_ID;
+        entry.dataProvider = run.dataProvider;
+        // what the last run touched; a test that changed is selected through its own source file
+        entry.pageObjects = new TreeSet<>(run.pageObjects);
+        entry.dataFiles = new TreeSet<>(run.dataFiles);
+        target.put(key, entry);
+    }
+
+    private static Map<String, Entry> read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, Entry> entries = GSON.fromJson(reader, ENTRIES);
+            return entries == null ? new HashMap<>() : new HashMap<>(entries);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable run history " + file + ": " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+}
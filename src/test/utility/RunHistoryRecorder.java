@@ -0,0 +1,49 @@
+package test.utility;
+
+import org.testng.IDataProviderListener;
+import org.testng.IDataProviderMethod;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+
+import java.io.IOException;
+
+/**
+ * Records the outcome of every test method, the page objects it used and the data files of its
+ * data provider into the RunHistory, which is saved when the suite finishes. Commons adds the
+ * counts of the run to the report.
+ */
+public class RunHistoryRecorder implements ITestListener, ISuiteListener, IDataProviderListener {
+
+    @Override
+    public void afterDataProviderExecution(IDataProviderMethod dataProviderMethod, ITestNGMethod method, ITestContext context) {
+        RunHistory.shared().dataProviderFinished(method);
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        RunHistory.shared().record(result, "PASS");
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        RunHistory.shared().record(result, "FAIL");
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        RunHistory.shared().record(result, "SKIP");
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        try {
+            RunHistory.shared().save();
+        } catch (IOException e) {
+            System.err.println("Failed to save run history: " + e.getMessage());
+        }
+    }
+}
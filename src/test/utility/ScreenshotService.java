@@ -0,0 +1,251 @@
+package test.utility;
+
+import com.microsoft.playwright.Page;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Screenshot pipeline used by logPass/logFail.
+ * The test thread only grabs the raw PNG bytes from the browser; decoding, downscaling,
+ * compression and the disk write run on a small bounded worker pool. When the queue is full
+ * the capturing thread encodes the image itself, which slows producers down instead of
+ * buffering without limit (backpressure).
+ *
+ * Settings:
+ *   screenshot.policy       always | on-fail | sampled (default always)
+ *   screenshot.sampleRate   with "sampled", capture every Nth passing step (default 5)
+ *   screenshot.fullPage     full page instead of viewport only (default true)
+ *   screenshot.format       jpeg | png (default jpeg)
+ *   screenshot.quality      JPEG quality between 0 and 1 (default 0.7)
+ *   screenshot.scale        downscale factor between 0 and 1 (default 1.0)
+ *   screenshot.workers      encoder threads (default 2)
+ *   screenshot.queueSize    pending captures before backpressure kicks in (default 32)
+ *   screenshot.thumbnails   also write a small JPEG to screenshots/thumbs for the fragment report
+ *                           (default true when report.mode writes fragments)
+ *   screenshot.thumbWidth   thumbnail width in pixels (default 240)
+ */
+public final class ScreenshotService {
+
+    public enum CapturePolicy { ALWAYS, ON_FAIL, SAMPLED }
+
+    private static final CapturePolicy POLICY = CapturePolicy.valueOf(
+            FrameworkConfig.get("screenshot.policy", "always").toUpperCase(Locale.ROOT).replace('-', '_'));
+    private static final int SAMPLE_RATE = Math.max(1, FrameworkConfig.getInt("screenshot.sampleRate", 5));
+    private static final boolean FULL_PAGE = FrameworkConfig.getBoolean("screenshot.fullPage", true);
+    private static final String FORMAT = FrameworkConfig.get("screenshot.format", "jpeg").toLowerCase(Locale.ROOT);
+    private static final float QUALITY = Float.parseFloat(FrameworkConfig.get("screenshot.quality", "0.7"));
+    private static final double SCALE = Double.parseDouble(FrameworkConfig.get("screenshot.scale", "1.0"));
+    private static final int WORKERS = Math.max(1, FrameworkConfig.getInt("screenshot.workers", 2));
+    private static final int QUEUE_SIZE = Math.max(1, FrameworkConfig.getInt("screenshot.queueSize", 32));
+    private static final boolean THUMBNAILS = FrameworkConfig.getBoolean("screenshot.thumbnails", ReportWriter.writesFragments());
+    private static final int THUMB_WIDTH = Math.max(16, FrameworkConfig.getInt("screenshot.thumbWidth", 240));
+
+    private static final AtomicInteger passSteps = new AtomicInteger();
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong written = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong callerRuns = new AtomicLong();
+    private static final AtomicLong captureNanos = new AtomicLong();
+    private static final AtomicLong encodeNanos = new AtomicLong();
+    private static final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private static final ThreadPoolExecutor encoder = createEncoder();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ScreenshotService::shutdown, "screenshot-shutdown"));
+    }
+
+    private ScreenshotService() {
+    }
+
+    /**
+     * Decide whether a step with the given outcome should get a screenshot
+     * @param passed true for logPass steps, false for logFail steps
+     * @return true if the configured policy asks for a capture
+     */
+    public static boolean shouldCapture(boolean passed) {
+        if (!passed) {
+            return true;
+        }
+        switch (POLICY) {
+            case ON_FAIL:
+                return false;
+            case SAMPLED:
+                return passSteps.getAndIncrement() % SAMPLE_RATE == 0;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Capture the page and queue it for encoding and writing
+     * @param page Page to capture
+     * @param fileName File name without extension
+     * @return Path of the screenshot relative to test-output, valid once the write completes
+     * @throws IOException If the screenshots directory cannot be created
+     */
+    public static String capture(Page page, String fileName) throws IOException {
+        File screenshotDir = FrameworkConfig.outputDir().resolve("screenshots").toFile();
+        if (!screenshotDir.exists() && !screenshotDir.mkdirs() && !screenshotDir.exists()) {
+            throw new IOException("Cannot create " + screenshotDir);
+        }
+
+        long start = System.nanoTime();
+        if (FULL_PAGE) {
+            // Scroll to bottom so lazily loaded content is rendered in the full page capture
+            page.evaluate("window.scrollTo(0, document.body.scrollHeight)");
+        }
+        byte[] png = page.screenshot(new Page.ScreenshotOptions().setFullPage(FULL_PAGE));
+        captureNanos.addAndGet(System.nanoTime() - start);
+
+        String extension = "png".equals(FORMAT) ? ".png" : ".jpg";
+        String fileNamePath = "screenshots/" + fileName + extension;
+        File target = new File(screenshotDir, fileName + extension);
+
+        submitted.incrementAndGet();
+        encoder.execute(() -> write(png, target));
+        maxQueueDepth.accumulateAndGet(encoder.getQueue().size(), Math::max);
+        return fileNamePath;
+    }
+
+    /**
+     * Thumbnail of a screenshot returned by capture; it exists only with screenshot.thumbnails
+     * @param screenshotPath Path returned by capture, e.g. screenshots/login.jpg
+     * @return Path relative to test-output, e.g. screenshots/thumbs/login.jpg
+     */
+    public static String thumbnailPath(String screenshotPath) {
+        return "screenshots/thumbs/" + thumbnailName(screenshotPath.substring(screenshotPath.lastIndexOf('/') + 1));
+    }
+
+    private static String thumbnailName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + ".jpg";
+    }
+
+    /**
+     * Pipeline counters for the run so far
+     * @return Summary text
+     */
+    public static String metrics() {
+        long count = Math.max(1, submitted.get());
+        return String.format("Screenshots submitted: %d, written: %d, failed: %d, pending: %d, "
+                        + "max queue depth: %d/%d, encoded on caller (backpressure): %d, "
+                        + "avg capture: %d ms, avg encode+write: %d ms",
+                submitted.get(), written.get(), failed.get(), encoder.getQueue().size() + encoder.getActiveCount(),
+                maxQueueDepth.get(), QUEUE_SIZE, callerRuns.get(),
+                TimeUnit.NANOSECONDS.toMillis(captureNanos.get() / count),
+                TimeUnit.NANOSECONDS.toMillis(encodeNanos.get() / count));
+    }
+
+    /**
+     * Wait for all queued screenshots to be written
+     */
+    public static void shutdown() {
+        encoder.shutdown();
+        try {
+            encoder.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ThreadPoolExecutor createEncoder() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "screenshot-encoder-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    // Queue full (or pool already drained at suite end): encode on the capturing thread
+                    callerRuns.incrementAndGet();
+                    runnable.run();
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static void write(byte[] png, File target) {
+        long start = System.nanoTime();
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            if (SCALE > 0 && SCALE < 1) {
+                image = downscale(image, SCALE);
+            }
+            if ("png".equals(FORMAT)) {
+                ImageIO.write(image, "png", target);
+            } else {
+                writeJpeg(image, target);
+            }
+            if (THUMBNAILS && image.getWidth() > THUMB_WIDTH) {
+                File thumbs = new File(target.getParentFile(), "thumbs");
+                if (!thumbs.isDirectory() && !thumbs.mkdirs() && !thumbs.isDirectory()) {
+                    throw new IOException("Cannot create " + thumbs);
+                }
+                writeJpeg(downscale(image, THUMB_WIDTH / (double) image.getWidth()),
+                        new File(thumbs, thumbnailName(target.getName())));
+            }
+            written.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            System.err.println("Failed to write screenshot " + target + ": " + e.getMessage());
+        } finally {
+            encodeNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private static BufferedImage downscale(BufferedImage source, double scale) {
+        int width = Math.max(1, (int) (source.getWidth() * scale));
+        int height = Math.max(1, (int) (source.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(source, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private static void writeJpeg(BufferedImage image, File target) throws IOException {
+        // JPEG has no alpha channel, so flatten to RGB first
+        BufferedImage rgb = image;
+        if (image.getType() != BufferedImage.TYPE_INT_RGB) {
+            rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = rgb.createGraphics();
+            graphics.drawImage(image, 0, 0, null);
+            graphics.dispose();
+        }
+
+        // ImageOutputStream does not truncate, so never write over an older, larger file
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Cannot replace " + target);
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(QUALITY);
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(target)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(rgb, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package test.utility;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Lets consecutive data rows of a test method share one loaded page.
+ * After a row passes its page is kept on the worker thread; before the next row of the same
+ * method the reset hook restores the page in place (clearing inputs or storage through JS) instead
+ * of a full navigation. When the hook fails the row gets a fresh page from BrowserPool. Tests check
+ * Commons.isSessionReused() to skip their initial navigation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SessionBatch {
+
+    /**
+     * @return Name of a public no-argument method of the test class that prepares the page for the
+     * next row; a boolean result tells whether the page is ready, a void method succeeds unless it throws
+     */
+    String reset();
+
+    /**
+     * @return Rows served by one page before it is replaced
+     */
+    int maxRows() default 50;
+}
@@ -0,0 +1,135 @@
+package test.utility;
+
+import com.microsoft.playwright.Page;
+import org.testng.ITestResult;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the page of a passed @SessionBatch row on its worker thread for the next row of the same
+ * test method, and runs the method's reset hook before the page is reused.
+ *
+ * Settings:
+ *   session.batch   reuse pages between rows of @SessionBatch test methods (default true)
+ */
+final class SessionBatcher {
+
+    private static final boolean ENABLED = FrameworkConfig.getBoolean("session.batch", true);
+
+    private static final ThreadLocal<Kept> KEPT = new ThreadLocal<>();
+
+    private static final AtomicInteger rowsReused = new AtomicInteger();
+    private static final AtomicInteger resetFallbacks = new AtomicInteger();
+    private static final AtomicLong resetNanos = new AtomicLong();
+
+    /**
+     * Page left by the previous row of a test method
+     */
+    private static final class Kept {
+        final Method method;
+        final Page page;
+        final int rows;
+
+        Kept(Method method, Page page, int rows) {
+            this.method = method;
+            this.page = page;
+            this.rows = rows;
+        }
+    }
+
+    private SessionBatcher() {
+    }
+
+    /**
+     * Take the page kept for the calling thread if it can serve the given test method;
+     * a page kept for another method is released to the pool
+     * @param method Test method about to run
+     * @return Kept page, or null if the test needs a page from BrowserPool
+     */
+    static Page take(Method method) {
+        Kept kept = KEPT.get();
+        if (kept == null) {
+            return null;
+        }
+        KEPT.remove();
+        SessionBatch batch = method.getAnnotation(SessionBatch.class);
+        if (batch == null || !kept.method.equals(method) || kept.rows >= batch.maxRows() || kept.page.isClosed()) {
+            BrowserPool.release(kept.page);
+            return null;
+        }
+        KEPT.set(kept);
+        return kept.page;
+    }
+
+    /**
+     * Run the reset hook of a test method on the page returned by take()
+     * @param test Test class instance
+     * @param method Test method about to run
+     * @return true if the page is ready for the row; otherwise the caller releases it
+     */
+    static boolean reset(Object test, Method method) {
+        SessionBatch batch = method.getAnnotation(SessionBatch.class);
+        long start = System.nanoTime();
+        boolean ready;
+        try {
+            Object result = test.getClass().getMethod(batch.reset()).invoke(test);
+            ready = !(result instanceof Boolean) || (Boolean) result;
+        } catch (InvocationTargetException e) {
+            System.err.println("Session reset " + batch.reset() + " failed, reloading: " + e.getCause());
+            ready = false;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot call session reset hook " + batch.reset() + " of "
+                    + test.getClass().getName(), e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            resetNanos.addAndGet(elapsed);
+            Timings.record("session.reset", elapsed);
+        }
+        if (ready) {
+            rowsReused.incrementAndGet();
+        } else {
+            resetFallbacks.incrementAndGet();
+            KEPT.remove();
+        }
+        return ready;
+    }
+
+    /**
+     * Keep the page of a finished row for the next row instead of releasing it
+     * @param result Result of the row
+     * @param page Page the row ran on
+     * @param reusable false for pages that must not be shared, e.g. traced retry contexts
+     * @return true if the page was kept; otherwise the caller releases it
+     */
+    static boolean keep(ITestResult result, Page page, boolean reusable) {
+        Method method = result.getMethod().getConstructorOrMethod().getMethod();
+        Kept previous = KEPT.get();
+        KEPT.remove();
+        if (!ENABLED || !reusable || page == null || page.isClosed() || result.getStatus() != ITestResult.SUCCESS
+                || method == null || method.getAnnotation(SessionBatch.class) == null) {
+            return false;
+        }
+        int rows = previous != null && previous.page == page ? previous.rows + 1 : 1;
+        KEPT.set(new Kept(method, page, rows));
+        return true;
+    }
+
+    /**
+     * Counters for the run so far
+     * @return Summary text, or null if no test uses session batching
+     */
+    static String summary() {
+        int reused = rowsReused.get();
+        int fallbacks = resetFallbacks.get();
+        if (reused + fallbacks == 0) {
+            return null;
+        }
+        return String.format("Session batching: rows on a reused page: %d, reset fallbacks to a fresh page: %d, "
+                        + "avg reset: %d ms", reused, fallbacks,
+                TimeUnit.NANOSECONDS.toMillis(resetNanos.get() / (reused + fallbacks)));
+    }
+}
@@ -0,0 +1,123 @@
+package test.utility;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.Page;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Cache of authenticated browser sessions, keyed by user name.
+ * The first request for a user drives the real login flow once, saves the context's
+ * storage state (cookies and localStorage) to test-output/sessions and seeds every later
+ * context for that user from the file. The folder sits next to the DurationHistory rather than
+ * in the report.dir, so the shards of a ShardedSuiteRunner share it and log in once. The file is
+ * written to a temporary name and moved into place, so other threads and JVMs never read a
+ * partial file. Entries expire after a TTL and are dropped as soon as a seeded page is seen
+ * navigating back to the login page.
+ *
+ * Settings:
+ *   session.ttlMinutes   lifetime of a saved session (default 30)
+ */
+public final class SessionCache {
+
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(FrameworkConfig.getInt("session.ttlMinutes", 30));
+    private static final Path SESSION_DIR = DurationHistory.directory().resolveSibling("sessions");
+
+    // One lock per user, so parallel tests for the same user log in only once
+    private static final ConcurrentMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private SessionCache() {
+    }
+
+    /**
+     * Storage state file for a user, logging in through the UI if there is no valid one
+     * @param username Cache key
+     * @param loginFlow Drives the login on a fresh page and returns once logged in
+     * @return Path of the saved storage state
+     */
+    public static Path getStorageState(String username, Consumer<Page> loginFlow) {
+        Path file = fileFor(username);
+        if (isValid(file)) {
+            return file;
+        }
+        synchronized (LOCKS.computeIfAbsent(username, key -> new Object())) {
+            if (isValid(file)) {
+                return file;
+            }
+            Page loginPage = BrowserPool.acquirePage(new Browser.NewContextOptions());
+            try {
+                loginFlow.accept(loginPage);
+                Files.createDirectories(SESSION_DIR);
+                String state = loginPage.context().storageState();
+                Path temp = Files.createTempFile(SESSION_DIR, file.getFileName().toString(), ".tmp");
+                try {
+                    Files.write(temp, state.getBytes(StandardCharsets.UTF_8));
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot save session for " + username, e);
+            } finally {
+                BrowserPool.release(loginPage);
+            }
+            return file;
+        }
+    }
+
+    /**
+     * Open a page whose context already carries the user's session
+     * @param username Cache key
+     * @param loginFlow Drives the login on a fresh page, used when no valid session is cached
+     * @param isLoggedOutUrl Recognizes the URL of the login page; navigating there invalidates the session
+     * @return Authenticated page, to be released with BrowserPool.release()
+     */
+    public static Page openAuthenticatedPage(String username, Consumer<Page> loginFlow, Predicate<String> isLoggedOutUrl) {
+        Path state = getStorageState(username, loginFlow);
+        Page page = BrowserPool.acquirePage(new Browser.NewContextOptions().setStorageStatePath(state));
+        page.onFrameNavigated(frame -> {
+            if (frame == page.mainFrame() && isLoggedOutUrl.test(frame.url())) {
+                invalidate(username);
+            }
+        });
+        return page;
+    }
+
+    /**
+     * Drop the saved session of a user, forcing a UI login on next use
+     * @param username Cache key
+     */
+    public static void invalidate(String username) {
+        try {
+            Files.deleteIfExists(fileFor(username));
+        } catch (IOException e) {
+            System.err.println("Cannot delete session of " + username + ": " + e.getMessage());
+        }
+    }
+
+    private static boolean isValid(Path file) {
+        try {
+            if (!Files.exists(file)) {
+                return false;
+            }
+            FileTime modified = Files.getLastModifiedTime(file);
+            return System.currentTimeMillis() - modified.toMillis() < TTL_MILLIS;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Path fileFor(String username) {
+        return SESSION_DIR.resolve(username.replaceAll("[^a-zA-Z0-9_.-]", "_") + ".json");
+    }
+}
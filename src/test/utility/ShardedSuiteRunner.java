@@ -0,0 +1,439 @@
+package test.utility;
+
+import com.aventstack.extentreports.ExtentReports;
+import com.aventstack.extentreports.reporter.ExtentSparkReporter;
+import org.testng.annotations.Test;
+import org.testng.xml.SuiteXmlParser;
+import org.testng.xml.XmlClass;
+import org.testng.xml.XmlSuite;
+import org.testng.xml.XmlTest;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Runs a TestNG suite as several JVMs in parallel and merges their results into one report.
+ * The classes of the suite are balanced over the shards by their durations in the
+ * DurationHistory (longest first onto the least loaded shard); a class that alone takes longer
+ * than a shard's fair share is split by data rows (data.shard.* test parameters, see DataRows),
+ * provided all of its test methods take their rows from DataRows according to the RunHistory.
+ * Other classes would run in full on every shard, so they are always assigned whole.
+ * Every shard gets its own suite file and output folder under test-output/shards; afterwards the
+ * shards' testng-results.xml, Extent reports (via their JSON archives), fragment reports and
+ * screenshots are merged into test-output.
+ *
+ * Usage:
+ *   java -cp ... test.utility.ShardedSuiteRunner [--suite TestNG.xml] [--shards N] [--plan | --merge]
+ *   --plan    only write the shard suite files, e.g. to hand them to several agents
+ *   --merge   only merge the shard folders already present under test-output/shards
+ * System properties given to the runner (-Dbrowser.headless=true, ...) are passed on to the shards.
+ * Extent's JSON archives are read and written with reflection on java.lang, so the runner and the
+ * shards need --add-opens java.base/java.lang=ALL-UNNAMED (added to the shards automatically).
+ */
+public final class ShardedSuiteRunner {
+
+    private static final String OPEN_JAVA_LANG = "--add-opens=java.base/java.lang=ALL-UNNAMED";
+
+    // estimate for a class without any history
+    private static final double DEFAULT_CLASS_MILLIS = 60_000;
+
+    private final Path outputDir = Paths.get(System.getProperty("user.dir"), "test-output");
+    private final Path shardsDir = outputDir.resolve("shards");
+    // shards of one run fold their run history entries together
+    private final String runId = UUID.randomUUID().toString();
+
+    private ShardedSuiteRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String suiteFile = "TestNG.xml";
+        int shards = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        boolean planOnly = false;
+        boolean mergeOnly = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--suite":
+                    suiteFile = args[++i];
+                    break;
+                case "--shards":
+                    shards = Integer.parseInt(args[++i]);
+                    break;
+                case "--plan":
+                    planOnly = true;
+                    break;
+                case "--merge":
+                    mergeOnly = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        ShardedSuiteRunner runner = new ShardedSuiteRunner();
+        if (!mergeOnly) {
+            List<Path> suites = runner.plan(Paths.get(suiteFile), shards);
+            if (planOnly) {
+                return;
+            }
+            int failedShards = runner.launch(suites);
+            if (failedShards > 0) {
+                System.err.println(failedShards + " shard(s) exited with an error, see console.log in their folders");
+            }
+        }
+        runner.merge();
+    }
+
+    /**
+     * Part of the suite run by one shard: a class, or a share of its data rows
+     */
+    private static final class Piece {
+        final XmlTest test;
+        final XmlClass xmlClass;
+        final int rowShard;
+        final int rowShards;
+        final double estimateMillis;
+
+        Piece(XmlTest test, XmlClass xmlClass, int rowShard, int rowShards, double estimateMillis) {
+            this.test = test;
+            this.xmlClass = xmlClass;
+            this.rowShard = rowShard;
+            this.rowShards = rowShards;
+            this.estimateMillis = estimateMillis;
+        }
+    }
+
+    /**
+     * Split the suite into balanced shards and write one suite file per shard
+     * @param suiteFile Suite to split
+     * @param shards Number of shards
+     * @return Suite files of the shards that received work
+     * @throws IOException If a file cannot be read or written
+     */
+    List<Path> plan(Path suiteFile, int shards) throws IOException {
+        XmlSuite suite;
+        try (InputStream input = Files.newInputStream(suiteFile)) {
+            suite = new SuiteXmlParser().parse(suiteFile.toString(), input, false);
+        }
+        DurationHistory history = DurationHistory.shared();
+        double unknownClassMillis = history.meanMillis(0) > 0 ? history.meanMillis(0) * 4 : DEFAULT_CLASS_MILLIS;
+
+        List<Piece> wholeClasses = new ArrayList<>();
+        double total = 0;
+        for (XmlTest test : suite.getTests()) {
+            for (XmlClass xmlClass : test.getXmlClasses()) {
+                double estimate = history.classEstimateMillis(xmlClass.getName(), unknownClassMillis);
+                wholeClasses.add(new Piece(test, xmlClass, 0, 1, estimate));
+                total += estimate;
+            }
+        }
+        double fairShare = total / shards;
+
+        List<Piece> pieces = new ArrayList<>();
+        for (Piece piece : wholeClasses) {
+            int split = fairShare <= 0 ? 1 : (int) Math.min(shards, Math.ceil(piece.estimateMillis / fairShare));
+            if (split <= 1 || !splitsByRows(piece.xmlClass)) {
+                pieces.add(piece);
+            } else {
+                for (int i = 0; i < split; i++) {
+                    pieces.add(new Piece(piece.test, piece.xmlClass, i, split, piece.estimateMillis / split));
+                }
+            }
+        }
+
+        // Longest processing time first: each piece goes to the shard with the least work so far
+        pieces.sort(Comparator.comparingDouble((Piece piece) -> piece.estimateMillis).reversed());
+        double[] load = new double[shards];
+        List<List<Piece>> assigned = new ArrayList<>();
+        PriorityQueue<Integer> leastLoaded = new PriorityQueue<>(Comparator.comparingDouble((Integer shard) -> load[shard])
+                .thenComparingInt(shard -> shard));
+        for (int shard = 0; shard < shards; shard++) {
+            assigned.add(new ArrayList<>());
+            leastLoaded.add(shard);
+        }
+        for (Piece piece : pieces) {
+            int shard = leastLoaded.poll();
+            assigned.get(shard).add(piece);
+            load[shard] += piece.estimateMillis;
+            leastLoaded.add(shard);
+        }
+
+        deleteRecursively(shardsDir);
+        List<Path> suiteFiles = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            if (assigned.get(shard).isEmpty()) {
+                continue;
+            }
+            Path dir = shardsDir.resolve("shard-" + shard);
+            Files.createDirectories(dir);
+            Path file = dir.resolve("suite.xml");
+            Files.write(file, toXml(shardSuite(suite, shard, assigned.get(shard))).getBytes(StandardCharsets.UTF_8));
+            suiteFiles.add(file);
+            System.out.println(String.format(Locale.ROOT, "Shard %d: %d piece(s), estimated %.1f s -> %s",
+                    shard, assigned.get(shard).size(), load[shard] / 1000, file));
+        }
+        return suiteFiles;
+    }
+
+    /**
+     * Whether the data.shard.* parameters divide a class: every test method it runs has a data
+     * provider that read its rows through DataRows in the last run
+     */
+    private static boolean splitsByRows(XmlClass xmlClass) {
+        Class<?> type;
+        try {
+            type = Class.forName(xmlClass.getName(), false, ShardedSuiteRunner.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+        // with a class level @Test every public method is a test, with or without a provider
+        if (type.isAnnotationPresent(Test.class)) {
+            return false;
+        }
+        List<String> included = new ArrayList<>();
+        xmlClass.getIncludedMethods().forEach(method -> included.add(method.getName()));
+        RunHistory history = RunHistory.shared();
+        boolean anyTest = false;
+        for (Method method : type.getMethods()) {
+            Test test = method.getAnnotation(Test.class);
+            if (test == null || !test.enabled() || (!included.isEmpty() && !included.contains(method.getName()))
+                    || xmlClass.getExcludedMethods().contains(method.getName())) {
+                continue;
+            }
+            RunHistory.Entry entry = history.get(DurationHistory.key(type.getName(), method.getName(), null));
+            if (test.dataProvider().isEmpty() || entry == null || entry.dataFiles.isEmpty()) {
+                return false;
+            }
+            anyTest = true;
+        }
+        return anyTest;
+    }
+
+    private static XmlSuite shardSuite(XmlSuite suite, int shard, List<Piece> pieces) {
+        XmlSuite shardSuite = new XmlSuite();
+        shardSuite.setName(suite.getName() + " [shard " + shard + "]");
+        shardSuite.setParallel(suite.getParallel());
+        shardSuite.setThreadCount(suite.getThreadCount());
+        shardSuite.setDataProviderThreadCount(suite.getDataProviderThreadCount());
+        shardSuite.setShareThreadPoolForDataProviders(suite.isShareThreadPoolForDataProviders());
+        shardSuite.setListeners(suite.getListeners());
+        shardSuite.setParameters(suite.getParameters());
+        for (Piece piece : pieces) {
+            XmlTest test = new XmlTest(shardSuite);
+            String name = piece.test.getName() + " - " + piece.xmlClass.getName();
+            Map<String, String> parameters = new HashMap<>(piece.test.getLocalParameters());
+            if (piece.rowShards > 1) {
+                name += " [rows " + (piece.rowShard + 1) + "/" + piece.rowShards + "]";
+                parameters.put("data.shard.index", String.valueOf(piece.rowShard));
+                parameters.put("data.shard.count", String.valueOf(piece.rowShards));
+            }
+            test.setName(name);
+            test.setParameters(parameters);
+            test.setXmlClasses(new ArrayList<>(List.of((XmlClass) piece.xmlClass.clone())));
+        }
+        return shardSuite;
+    }
+
+    private static String toXml(XmlSuite suite) {
+        String xml = suite.toXml();
+        // XmlSuite.toXml() drops this attribute, without it every data-driven method gets its own pool
+        if (suite.isShareThreadPoolForDataProviders()) {
+            xml = xml.replaceFirst("<suite ", "<suite share-thread-pool-for-data-providers=\"true\" ");
+        }
+        return xml;
+    }
+
+    /**
+     * Run every shard suite in its own JVM and wait for all of them
+     * @param suiteFiles Shard suite files
+     * @return Number of shards that exited with an error
+     * @throws IOException If a JVM cannot be started
+     * @throws InterruptedException If interrupted while waiting
+     */
+    int launch(List<Path> suiteFiles) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> forwarded = new ArrayList<>();
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-D") || argument.startsWith("-Xmx")) {
+                forwarded.add(argument);
+            }
+        }
+
+        long start = System.nanoTime();
+        List<Process> processes = new ArrayList<>();
+        for (Path suiteFile : suiteFiles) {
+            Path dir = suiteFile.getParent();
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.add(OPEN_JAVA_LANG);
+            command.addAll(forwarded);
+            command.add("-Dreport.dir=" + dir);
+            command.add("-Dreport.json=true");
+            command.add("-Dhistory.runId=" + runId);
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("org.testng.TestNG");
+            command.add("-d");
+            command.add(dir.toString());
+            command.add(suiteFile.toString());
+            processes.add(new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(dir.resolve("console.log").toFile())
+                    .start());
+        }
+
+        int failed = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            int exitCode = processes.get(i).waitFor();
+            System.out.println(String.format(Locale.ROOT, "%s finished with exit code %d after %.1f s",
+                    suiteFiles.get(i).getParent().getFileName(), exitCode,
+                    (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1)));
+            // TestNG exits with 1 when tests fail; anything else means the shard itself broke
+            if (exitCode != 0 && exitCode != 1) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Merge the shard folders into test-output: testng-results.xml, TestReport.html, the fragment report and screenshots
+     * @throws Exception If the results cannot be merged
+     */
+    void merge() throws Exception {
+        List<Path> shardDirs = new ArrayList<>();
+        if (Files.isDirectory(shardsDir)) {
+            try (Stream<Path> dirs = Files.list(shardsDir)) {
+                dirs.filter(Files::isDirectory).sorted().forEach(shardDirs::add);
+            }
+        }
+        if (shardDirs.isEmpty()) {
+            System.err.println("No shard output found in " + shardsDir);
+            return;
+        }
+
+        mergeTestNgResults(shardDirs, outputDir.resolve("testng-results.xml"));
+
+        ExtentReports extent = new ExtentReports();
+        extent.attachReporter(new ExtentSparkReporter(outputDir.resolve("TestReport.html").toString()));
+        for (Path dir : shardDirs) {
+            Path archive = dir.resolve("extent.json");
+            if (Files.isRegularFile(archive)) {
+                try {
+                    extent.createDomainFromJsonArchive(archive.toFile());
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("Cannot read " + archive + "; run the merge with " + OPEN_JAVA_LANG, e);
+                }
+            }
+            copyScreenshots(dir.resolve("screenshots"), outputDir.resolve("screenshots"));
+        }
+        extent.flush();
+        if (shardDirs.stream().anyMatch(dir -> Files.isRegularFile(dir.resolve("report").resolve("index.js")))) {
+            int tests = FragmentReportSink.merge(shardDirs, outputDir);
+            System.out.println("Merged " + tests + " test(s) into the fragment report " + outputDir.resolve("report"));
+        }
+        System.out.println("Merged " + shardDirs.size() + " shard(s) into " + outputDir);
+    }
+
+    private static void mergeTestNgResults(List<Path> shardDirs, Path target) throws Exception {
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        Document merged = builder.newDocument();
+        Element root = merged.createElement("testng-results");
+        merged.appendChild(root);
+        Element reporterOutput = merged.createElement("reporter-output");
+        root.appendChild(reporterOutput);
+        String[] counters = {"ignored", "total", "passed", "failed", "skipped"};
+        long[] totals = new long[counters.length];
+
+        for (Path dir : shardDirs) {
+            File results = dir.resolve("testng-results.xml").toFile();
+            if (!results.isFile()) {
+                System.err.println("No testng-results.xml in " + dir);
+                continue;
+            }
+            Element shardRoot = builder.parse(results).getDocumentElement();
+            for (int i = 0; i < counters.length; i++) {
+                String value = shardRoot.getAttribute(counters[i]);
+                totals[i] += value.isEmpty() ? 0 : Long.parseLong(value);
+            }
+            NodeList children = shardRoot.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                if ("reporter-output".equals(child.getNodeName())) {
+                    NodeList lines = child.getChildNodes();
+                    for (int j = 0; j < lines.getLength(); j++) {
+                        reporterOutput.appendChild(merged.importNode(lines.item(j), true));
+                    }
+                } else {
+                    root.appendChild(merged.importNode(child, true));
+                }
+            }
+        }
+        for (int i = 0; i < counters.length; i++) {
+            root.setAttribute(counters[i], String.valueOf(totals[i]));
+        }
+
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.transform(new DOMSource(merged), new StreamResult(target.toFile()));
+    }
+
+    private static void copyScreenshots(Path from, Path to) throws IOException {
+        if (!Files.isDirectory(from)) {
+            return;
+        }
+        // screenshots and their thumbs/ subfolder
+        try (Stream<Path> paths = Files.walk(from)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path target = to.resolve(from.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package test.utility;
+
+import com.aventstack.extentreports.markuputils.MarkupHelper;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Suite-wide step timing instrumentation.
+ * Page-object actions, waits, navigations, dialog checks and screenshots are timed into one
+ * LatencyHistogram per action name. When a test sets a timing tag (e.g. the user name of the
+ * data row) the value is recorded both under the plain action name and under "action [tag]",
+ * so the same step can be compared across data rows. Results are exported as JSON and CSV
+ * and rendered as a table in the Extent report.
+ */
+public final class Timings {
+
+    private static final ConcurrentMap<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+    private static final ThreadLocal<String> TAG = new ThreadLocal<>();
+
+    private static final String[] COLUMNS = {"action", "count", "mean_ms", "p50_ms", "p95_ms", "p99_ms", "max_ms"};
+
+    private Timings() {
+    }
+
+    /**
+     * Tag the timings recorded by the current thread, e.g. with the data row's user name
+     * @param tag Tag value, null to clear it
+     */
+    public static void setTag(String tag) {
+        if (tag == null) {
+            TAG.remove();
+        } else {
+            TAG.set(tag);
+        }
+    }
+
+    /**
+     * Time an action
+     * @param action Action name, e.g. LoginPageObjects.enterUsername
+     * @param step Code performing the action
+     */
+    public static void time(String action, Runnable step) {
+        long start = System.nanoTime();
+        try {
+            step.run();
+        } finally {
+            record(action, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Time an action that returns a value
+     * @param action Action name, e.g. wait.elementsReady
+     * @param step Code performing the action
+     * @return Value returned by the step
+     */
+    public static <T> T call(String action, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            record(action, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Record a duration measured by the caller
+     * @param action Action name
+     * @param nanos Duration in nanoseconds
+     */
+    public static void record(String action, long nanos) {
+        HISTOGRAMS.computeIfAbsent(action, key -> new LatencyHistogram()).recordNanos(nanos);
+        String tag = TAG.get();
+        if (tag != null) {
+            HISTOGRAMS.computeIfAbsent(action + " [" + tag + "]", key -> new LatencyHistogram()).recordNanos(nanos);
+        }
+    }
+
+    /**
+     * Histogram of an action, e.g. for assertions
+     * @param action Action name, optionally with " [tag]"
+     * @return Histogram, or null if the action was never recorded
+     */
+    public static LatencyHistogram get(String action) {
+        return HISTOGRAMS.get(action);
+    }
+
+    /**
+     * Timings as table rows sorted by action name, first row is the header
+     * @return Table data
+     */
+    public static String[][] toTable() {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(COLUMNS);
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(HISTOGRAMS).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            rows.add(new String[]{
+                    entry.getKey(),
+                    String.valueOf(histogram.getCount()),
+                    format(histogram.getMeanMillis()),
+                    format(histogram.getPercentileMillis(50)),
+                    format(histogram.getPercentileMillis(95)),
+                    format(histogram.getPercentileMillis(99)),
+                    format(histogram.getMaxMillis())});
+        }
+        return rows.toArray(new String[0][]);
+    }
+
+    /**
+     * Timings as an HTML table for the Extent report
+     * @return Table markup
+     */
+    public static String toHtml() {
+        return MarkupHelper.createTable(toTable()).getMarkup();
+    }
+
+    /**
+     * Write timings.json and timings.csv
+     * @param directory Target directory, e.g. test-output
+     * @throws IOException If a file cannot be written
+     */
+    public static void export(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String[][] table = toTable();
+
+        try (Writer csv = Files.newBufferedWriter(directory.resolve("timings.csv"), StandardCharsets.UTF_8)) {
+            for (String[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    csv.write(i == 0 ? "\"" + row[i].replace("\"", "\"\"") + "\"" : row[i]);
+                    csv.write(i < row.length - 1 ? "," : "\n");
+                }
+            }
+        }
+
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (int r = 1; r < table.length; r++) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(COLUMNS[0], table[r][0]);
+            for (int i = 1; i < COLUMNS.length; i++) {
+                entry.put(COLUMNS[i], i == 1 ? (Object) Long.parseLong(table[r][i]) : (Object) Double.parseDouble(table[r][i]));
+            }
+            entries.add(entry);
+        }
+        try (Writer json = Files.newBufferedWriter(directory.resolve("timings.json"), StandardCharsets.UTF_8)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(entries, json);
+        }
+    }
+
+    private static String format(double millis) {
+        return String.format(Locale.ROOT, "%.1f", millis);
+    }
+}
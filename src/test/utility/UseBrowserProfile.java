@@ -0,0 +1,20 @@
+package test.utility;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Selects the BrowserProfile for a test method or for all tests of a class,
+ * e.g. {@code @UseBrowserProfile("fast")}. A method annotation wins over the class annotation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface UseBrowserProfile {
+
+    /**
+     * @return Profile name, "default" or "fast"
+     */
+    String value();
+}
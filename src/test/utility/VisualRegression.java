@@ -0,0 +1,606 @@
+package test.utility;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.ScreenshotAnimations;
+import com.microsoft.playwright.options.ScreenshotCaret;
+
+import javax.imageio.ImageIO;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Visual regression checks against baseline screenshots stored on disk.
+ * Baselines are PNG files named by the SHA-256 of their content (images/{sha256}.png) with an
+ * index.json mapping each check name to its hash, so identical baselines are stored once and a
+ * capture whose bytes hash to the baseline's passes without decoding either image. Other captures
+ * are compared tile by tile on a shared worker pool: identical rows are skipped with a bulk array
+ * compare and differing pixels are measured by their YIQ colour distance (the perceptual metric of
+ * pixelmatch), so anti-aliasing noise below the threshold is ignored. Ignore regions are left out
+ * of the comparison; masked locators are painted over in the capture itself. A diff image is only
+ * rendered for failing checks. Baselines are kept per browser profile, as the fast profile
+ * renders pages without images and fonts.
+ *
+ * Settings:
+ *   visual.baselineDir    baseline store (default src/test/visual-baselines)
+ *   visual.update         missing | all | none: record baselines that do not exist yet, re-record all
+ *                         baselines, or fail on a missing baseline (default missing)
+ *   visual.threshold      per pixel colour distance between 0 and 1 (default 0.1)
+ *   visual.maxDiffRatio   share of differing pixels still accepted (default 0.0)
+ *   visual.tileSize       tile edge in pixels (default 256)
+ *   visual.workers        diff threads (default number of processors)
+ *   visual.cacheSize      decoded baselines kept in memory (default 32)
+ */
+public final class VisualRegression {
+
+    private static final Path BASELINE_DIR = Paths.get(FrameworkConfig.get("visual.baselineDir",
+            System.getProperty("user.dir") + "/src/test/visual-baselines"));
+    private static final String UPDATE = FrameworkConfig.get("visual.update", "missing").toLowerCase(Locale.ROOT);
+    private static final double THRESHOLD = Double.parseDouble(FrameworkConfig.get("visual.threshold", "0.1"));
+    private static final double MAX_DIFF_RATIO = Double.parseDouble(FrameworkConfig.get("visual.maxDiffRatio", "0.0"));
+    private static final int TILE_SIZE = Math.max(16, FrameworkConfig.getInt("visual.tileSize", 256));
+    private static final int WORKERS = Math.max(1, FrameworkConfig.getInt("visual.workers", Runtime.getRuntime().availableProcessors()));
+    private static final int CACHE_SIZE = Math.max(1, FrameworkConfig.getInt("visual.cacheSize", 32));
+
+    // largest possible YIQ distance, between black and white
+    private static final double MAX_YIQ_DELTA = 35215;
+
+    private static final Type INDEX = new TypeToken<Map<String, String>>() { }.getType();
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final Map<String, String> index = loadIndex();
+    private static final Map<String, BufferedImage> decoded = Collections.synchronizedMap(lru(CACHE_SIZE));
+    // baseline hash + capture hash + options of comparisons that passed in this run
+    private static final Set<String> passed = ConcurrentHashMap.newKeySet();
+
+    private static final AtomicInteger comparisons = new AtomicInteger();
+    private static final AtomicInteger hashMatches = new AtomicInteger();
+    private static final AtomicInteger pixelDiffs = new AtomicInteger();
+    private static final AtomicInteger failures = new AtomicInteger();
+    private static final AtomicInteger baselinesWritten = new AtomicInteger();
+    private static final AtomicLong diffNanos = new AtomicLong();
+
+    private static final ExecutorService pool = createPool();
+
+    private VisualRegression() {
+    }
+
+    /**
+     * Comparison settings of one check; unset values come from the visual.* settings
+     */
+    public static final class Options {
+        private double threshold = THRESHOLD;
+        private double maxDiffRatio = MAX_DIFF_RATIO;
+        private int maxDiffPixels = -1;
+        private boolean fullPage = true;
+        private final List<Rectangle> ignored = new ArrayList<>();
+        private final List<Locator> masks = new ArrayList<>();
+
+        /**
+         * @param threshold Per pixel colour distance between 0 (exact) and 1 (anything matches)
+         * @return These options
+         */
+        public Options setThreshold(double threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * @param maxDiffRatio Share of differing pixels still accepted, e.g. 0.001
+         * @return These options
+         */
+        public Options setMaxDiffRatio(double maxDiffRatio) {
+            this.maxDiffRatio = maxDiffRatio;
+            return this;
+        }
+
+        /**
+         * @param maxDiffPixels Number of differing pixels still accepted; overrides the ratio
+         * @return These options
+         */
+        public Options setMaxDiffPixels(int maxDiffPixels) {
+            this.maxDiffPixels = maxDiffPixels;
+            return this;
+        }
+
+        /**
+         * @param fullPage Capture the full page instead of the viewport
+         * @return These options
+         */
+        public Options setFullPage(boolean fullPage) {
+            this.fullPage = fullPage;
+            return this;
+        }
+
+        /**
+         * Leave a region out of the comparison, e.g. a clock or a carousel
+         * @return These options
+         */
+        public Options ignore(int x, int y, int width, int height) {
+            ignored.add(new Rectangle(x, y, width, height));
+            return this;
+        }
+
+        /**
+         * Paint elements over in the capture, e.g. dynamic text whose position is stable
+         * @param locators Elements to mask
+         * @return These options
+         */
+        public Options mask(Locator... locators) {
+            Collections.addAll(masks, locators);
+            return this;
+        }
+
+        private long allowedDiffPixels(long comparedPixels) {
+            return maxDiffPixels >= 0 ? maxDiffPixels : (long) Math.floor(comparedPixels * maxDiffRatio);
+        }
+
+        private String key() {
+            return threshold + "|" + maxDiffRatio + "|" + maxDiffPixels + "|" + ignored;
+        }
+    }
+
+    /**
+     * Outcome of a check
+     */
+    public static final class Result {
+        private final String name;
+        private final boolean passed;
+        private final boolean baselineWritten;
+        private final long diffPixels;
+        private final String diffPath;
+        private final String message;
+
+        private Result(String name, boolean passed, boolean baselineWritten, long diffPixels, String diffPath, String message) {
+            this.name = name;
+            this.passed = passed;
+            this.baselineWritten = baselineWritten;
+            this.diffPixels = diffPixels;
+            this.diffPath = diffPath;
+            this.message = message;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        /**
+         * @return true if the capture was stored as the new baseline
+         */
+        public boolean isBaselineWritten() {
+            return baselineWritten;
+        }
+
+        public long getDiffPixels() {
+            return diffPixels;
+        }
+
+        /**
+         * @return Diff image relative to test-output, or null if none was written
+         */
+        public String getDiffPath() {
+            return diffPath;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Capture the page with animations stopped and the caret hidden and compare it with its baseline
+     * @param page Page to capture
+     * @param name Check name, unique per page state
+     * @param options Comparison settings
+     * @return Result; a missing baseline is recorded unless visual.update=none
+     */
+    public static Result check(Page page, String name, Options options) {
+        long start = System.nanoTime();
+        Page.ScreenshotOptions screenshot = new Page.ScreenshotOptions()
+                .setFullPage(options.fullPage)
+                .setAnimations(ScreenshotAnimations.DISABLED)
+                .setCaret(ScreenshotCaret.HIDE);
+        if (!options.masks.isEmpty()) {
+            screenshot.setMask(options.masks);
+        }
+        byte[] png = page.screenshot(screenshot);
+        Timings.record("visual.capture", System.nanoTime() - start);
+        return compare(baselineName(name), png, options);
+    }
+
+    /**
+     * Compare a PNG capture with the baseline of the given name
+     * @param name Baseline name
+     * @param png Captured image
+     * @param options Comparison settings
+     * @return Result
+     */
+    public static Result compare(String name, byte[] png, Options options) {
+        comparisons.incrementAndGet();
+        String actualHash = sha256(png);
+        String baselineHash = index.get(name);
+
+        if (baselineHash == null || "all".equals(UPDATE)) {
+            if (baselineHash == null && "none".equals(UPDATE)) {
+                failures.incrementAndGet();
+                return new Result(name, false, false, 0, null, "No visual baseline for " + name);
+            }
+            if (!actualHash.equals(baselineHash)) {
+                storeBaseline(name, actualHash, png);
+                return new Result(name, true, true, 0, null, "Visual baseline recorded for " + name);
+            }
+        }
+        if (actualHash.equals(baselineHash)) {
+            hashMatches.incrementAndGet();
+            return new Result(name, true, false, 0, null, "Visual match for " + name + " (identical image)");
+        }
+        String passKey = baselineHash + "|" + actualHash + "|" + options.key();
+        if (passed.contains(passKey)) {
+            hashMatches.incrementAndGet();
+            return new Result(name, true, false, 0, null, "Visual match for " + name + " (same as an earlier capture)");
+        }
+
+        long start = System.nanoTime();
+        try {
+            pixelDiffs.incrementAndGet();
+            Result result = diff(name, baselineHash, png, options);
+            if (result.passed) {
+                passed.add(passKey);
+            } else {
+                failures.incrementAndGet();
+            }
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            diffNanos.addAndGet(elapsed);
+            Timings.record("visual.diff", elapsed);
+        }
+    }
+
+    /**
+     * Counters for the run so far
+     * @return Summary text
+     */
+    public static String metrics() {
+        int diffs = Math.max(1, pixelDiffs.get());
+        return String.format("Visual checks: %d, identical by hash: %d, pixel diffs: %d (avg %d ms), failed: %d, "
+                        + "baselines written: %d",
+                comparisons.get(), hashMatches.get(), pixelDiffs.get(),
+                TimeUnit.NANOSECONDS.toMillis(diffNanos.get() / diffs), failures.get(), baselinesWritten.get());
+    }
+
+    /**
+     * Whether any check ran in this JVM
+     * @return true after the first check
+     */
+    public static boolean hasRun() {
+        return comparisons.get() > 0;
+    }
+
+    private static Result diff(String name, String baselineHash, byte[] png, Options options) {
+        BufferedImage actualImage = decode(png);
+        int width = actualImage.getWidth();
+        int height = actualImage.getHeight();
+        int[] actual = actualImage.getRGB(0, 0, width, height, null, 0, width);
+        BufferedImage expectedImage = baselineImage(baselineHash);
+        int expectedWidth = expectedImage.getWidth();
+        int expectedHeight = expectedImage.getHeight();
+
+        if (expectedWidth != width || expectedHeight != height) {
+            String actualPath = writeOutput(name + "-actual", actualImage);
+            return new Result(name, false, false, (long) width * height, actualPath,
+                    String.format("Visual mismatch for %s: size %dx%d, baseline %dx%d", name, width, height,
+                            expectedWidth, expectedHeight));
+        }
+        int[] expected = expectedImage.getRGB(0, 0, width, height, null, 0, width);
+
+        double maxDelta = MAX_YIQ_DELTA * options.threshold * options.threshold;
+        List<Callable<long[]>> tiles = new ArrayList<>();
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                Rectangle tile = new Rectangle(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+                if (options.ignored.stream().noneMatch(region -> region.contains(tile))) {
+                    tiles.add(() -> compareTile(expected, actual, width, tile, options.ignored, maxDelta));
+                }
+            }
+        }
+        long diffPixels = 0;
+        long comparedPixels = 0;
+        try {
+            for (Future<long[]> tile : pool.invokeAll(tiles)) {
+                long[] counts = tile.get();
+                diffPixels += counts[0];
+                comparedPixels += counts[1];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while comparing " + name, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Cannot compare " + name, e.getCause());
+        }
+
+        long allowed = options.allowedDiffPixels(comparedPixels);
+        String summary = String.format("%d of %d pixels differ (%.3f%%, allowed %d)", diffPixels, comparedPixels,
+                comparedPixels == 0 ? 0 : 100.0 * diffPixels / comparedPixels, allowed);
+        if (diffPixels <= allowed) {
+            return new Result(name, true, false, diffPixels, null, "Visual match for " + name + ": " + summary);
+        }
+        String diffPath = writeOutput(name + "-diff",
+                renderDiff(expected, actual, width, height, options.ignored, maxDelta));
+        writeOutput(name + "-actual", actualImage);
+        return new Result(name, false, false, diffPixels, diffPath, "Visual mismatch for " + name + ": " + summary);
+    }
+
+    /**
+     * Count differing and compared pixels of one tile
+     * @return {differing pixels, compared pixels}
+     */
+    private static long[] compareTile(int[] expected, int[] actual, int width, Rectangle tile,
+                                      List<Rectangle> ignored, double maxDelta) {
+        long diff = 0;
+        long compared = 0;
+        boolean partlyIgnored = ignored.stream().anyMatch(region -> region.intersects(tile));
+        for (int y = tile.y; y < tile.y + tile.height; y++) {
+            int from = y * width + tile.x;
+            int to = from + tile.width;
+            if (!partlyIgnored) {
+                compared += tile.width;
+                if (Arrays.mismatch(expected, from, to, actual, from, to) < 0) {
+                    continue;
+                }
+            }
+            for (int x = tile.x, i = from; i < to; x++, i++) {
+                if (partlyIgnored) {
+                    if (isIgnored(ignored, x, y)) {
+                        continue;
+                    }
+                    compared++;
+                }
+                if (expected[i] != actual[i] && colorDelta(expected[i], actual[i]) > maxDelta) {
+                    diff++;
+                }
+            }
+        }
+        return new long[] {diff, compared};
+    }
+
+    /**
+     * Baseline faded to light grey, differing pixels in red and ignored regions in blue
+     */
+    private static BufferedImage renderDiff(int[] expected, int[] actual, int width, int height,
+                                            List<Rectangle> ignored, double maxDelta) {
+        int[] pixels = new int[width * height];
+        for (int y = 0, i = 0; y < height; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (!ignored.isEmpty() && isIgnored(ignored, x, y)) {
+                    pixels[i] = 0xFFB0C4FF;
+                } else if (expected[i] != actual[i] && colorDelta(expected[i], actual[i]) > maxDelta) {
+                    pixels[i] = 0xFFFF0000;
+                } else {
+                    int gray = 255 - (int) ((255 - luma(expected[i])) * 0.1);
+                    pixels[i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+                }
+            }
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    private static boolean isIgnored(List<Rectangle> ignored, int x, int y) {
+        for (Rectangle region : ignored) {
+            if (region.contains(x, y)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Squared YIQ distance of two ARGB pixels, both blended onto white
+     */
+    private static double colorDelta(int a, int b) {
+        double alphaA = (a >>> 24) / 255.0;
+        double alphaB = (b >>> 24) / 255.0;
+        double r1 = blend((a >> 16) & 0xFF, alphaA);
+        double g1 = blend((a >> 8) & 0xFF, alphaA);
+        double b1 = blend(a & 0xFF, alphaA);
+        double r2 = blend((b >> 16) & 0xFF, alphaB);
+        double g2 = blend((b >> 8) & 0xFF, alphaB);
+        double b2 = blend(b & 0xFF, alphaB);
+
+        double y = (r1 - r2) * 0.29889531 + (g1 - g2) * 0.58662247 + (b1 - b2) * 0.11448223;
+        double i = (r1 - r2) * 0.59597799 - (g1 - g2) * 0.27417610 - (b1 - b2) * 0.32180189;
+        double q = (r1 - r2) * 0.21147017 - (g1 - g2) * 0.52261711 + (b1 - b2) * 0.31114694;
+        return 0.5053 * y * y + 0.299 * i * i + 0.1957 * q * q;
+    }
+
+    private static double blend(int channel, double alpha) {
+        return 255 + (channel - 255) * alpha;
+    }
+
+    private static int luma(int rgb) {
+        return (int) (((rgb >> 16) & 0xFF) * 0.299 + ((rgb >> 8) & 0xFF) * 0.587 + (rgb & 0xFF) * 0.114);
+    }
+
+    private static BufferedImage baselineImage(String hash) {
+        BufferedImage image = decoded.get(hash);
+        if (image != null) {
+            return image;
+        }
+        try {
+            image = decode(Files.readAllBytes(imageFile(hash)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read visual baseline " + imageFile(hash), e);
+        }
+        decoded.put(hash, image);
+        return image;
+    }
+
+    private static BufferedImage decode(byte[] png) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+            if (image == null) {
+                throw new IllegalArgumentException("Not an image");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot decode screenshot", e);
+        }
+    }
+
+    private static String writeOutput(String name, BufferedImage image) {
+        Path directory = FrameworkConfig.outputDir().resolve("visual");
+        String fileName = fileName(name) + ".png";
+        try {
+            Files.createDirectories(directory);
+            ImageIO.write(image, "png", directory.resolve(fileName).toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + fileName, e);
+        }
+        return "visual/" + fileName;
+    }
+
+    /**
+     * Store a capture as the baseline of a name, merged under a file lock with baselines that
+     * other JVMs recorded meanwhile
+     */
+    private static void storeBaseline(String name, String hash, byte[] png) {
+        try {
+            Path image = imageFile(hash);
+            Files.createDirectories(image.getParent());
+            if (!Files.exists(image)) {
+                Path temp = Files.createTempFile(image.getParent(), hash, ".tmp");
+                Files.write(temp, png);
+                Files.move(temp, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Path indexFile = BASELINE_DIR.resolve("index.json");
+            // the lock lives with the shared run history (not in the source tree) so every JVM of
+            // the working copy uses the same one, whatever its report.dir
+            Path lockFile = DurationHistory.directory().resolve("visual-baselines.lock");
+            Files.createDirectories(lockFile.getParent());
+            synchronized (index) {
+                try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                    // released when the channel closes
+                    channel.lock();
+                    Map<String, String> latest = new TreeMap<>(readIndex(indexFile));
+                    latest.put(name, hash);
+                    Path temp = indexFile.resolveSibling("index.json.tmp");
+                    try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                        GSON.toJson(latest, INDEX, writer);
+                    }
+                    Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    index.putAll(latest);
+                }
+            }
+            baselinesWritten.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot store visual baseline " + name, e);
+        }
+    }
+
+    private static Path imageFile(String hash) {
+        return BASELINE_DIR.resolve("images").resolve(hash + ".png");
+    }
+
+    private static String baselineName(String name) {
+        // engines render fonts and form controls differently, so each keeps its own baselines
+        String engine = BrowserPool.engine();
+        String profile = BrowserProfile.current().getName();
+        String baseline = "chromium".equals(engine) ? name : name + "@" + engine;
+        return BrowserProfile.DEFAULT.equals(profile) ? baseline : baseline + "@" + profile;
+    }
+
+    private static String fileName(String name) {
+        return name.replaceAll("[^a-zA-Z0-9@._-]", "_");
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, String> loadIndex() {
+        return new ConcurrentHashMap<>(readIndex(BASELINE_DIR.resolve("index.json")));
+    }
+
+    private static Map<String, String> readIndex(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return new HashMap<>();
+        }
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            Map<String, String> entries = GSON.fromJson(reader, INDEX);
+            return entries == null ? new HashMap<>() : entries;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Ignoring unreadable visual baseline index " + file + ": " + e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private static ExecutorService createPool() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(WORKERS, runnable -> {
+            Thread thread = new Thread(runnable, "visual-diff-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+}